@@ -20,20 +20,28 @@ import com.jfoenix.controls.JFXProgressBar;
 import com.jfoenix.controls.JFXSnackbar;
 import com.rohitawate.everest.controllers.auth.AuthTabController;
 import com.rohitawate.everest.controllers.codearea.EverestCodeArea;
+import com.rohitawate.everest.controllers.codearea.highlighters.Highlighter;
 import com.rohitawate.everest.controllers.codearea.highlighters.HighlighterFactory;
+import com.rohitawate.everest.controllers.codearea.highlighters.JSONHighlighter;
 import com.rohitawate.everest.controllers.visualizers.TreeVisualizer;
 import com.rohitawate.everest.controllers.visualizers.Visualizer;
 import com.rohitawate.everest.exceptions.NullResponseException;
 import com.rohitawate.everest.exceptions.RedirectException;
 import com.rohitawate.everest.format.FormatterFactory;
+import com.rohitawate.everest.format.JSONDocument;
 import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.misc.EverestUtilities;
 import com.rohitawate.everest.misc.ThemeManager;
 import com.rohitawate.everest.models.requests.DELETERequest;
 import com.rohitawate.everest.models.requests.DataRequest;
+import com.rohitawate.everest.models.requests.EverestRequest;
 import com.rohitawate.everest.models.requests.GETRequest;
 import com.rohitawate.everest.models.requests.HTTPConstants;
 import com.rohitawate.everest.models.responses.EverestResponse;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
+import com.rohitawate.everest.requestmanager.ClientFactory;
+import com.rohitawate.everest.requestmanager.LoadTest;
+import com.rohitawate.everest.requestmanager.LoadTestReport;
 import com.rohitawate.everest.requestmanager.RequestManager;
 import com.rohitawate.everest.requestmanager.RequestManagersPool;
 import com.rohitawate.everest.state.ComposerState;
@@ -49,17 +57,22 @@ import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
+import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.MediaType;
 import java.awt.*;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
@@ -68,6 +81,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.RejectedExecutionException;
 
 public class DashboardController implements Initializable {
     @FXML
@@ -80,33 +94,39 @@ public class DashboardController implements Initializable {
     private VBox responseLayer, loadingLayer, promptLayer, errorLayer, paramsBox;
     @FXML
     private Label statusCode, statusCodeDescription, responseTime,
-            responseSize, errorTitle, errorDetails;
+            responseSize, responseEncoding, responseCacheStatus, responseProtocol, responseStreamStats,
+            errorTitle, errorDetails, loadingDetails;
     @FXML
-    private JFXButton cancelButton, copyBodyButton;
+    private JFXButton sendButton, cancelButton, copyBodyButton, stopStreamButton;
     @FXML
     TabPane requestOptionsTab, responseTabPane;
     @FXML
     Tab paramsTab, authTab, headersTab, bodyTab;
     @FXML
-    private Tab responseBodyTab, visualizerTab, responseHeadersTab;
+    private Tab responseBodyTab, visualizerTab, responseHeadersTab, timingTab;
     @FXML
     private JFXProgressBar progressBar;
 
     private JFXSnackbar snackbar;
     private List<StringKeyValueFieldController> paramsControllers;
     private RequestManager requestManager;
+    private ResponseStreamViewer streamViewer;
+    private LoadTest loadTest;
     private AuthTabController authTabController;
     private HeaderTabController headerTabController;
     private BodyTabController bodyTabController;
     private IntegerProperty paramsCountProperty;
     private Visualizer visualizer;
     private ResponseHeadersViewer responseHeadersViewer;
+    private TimingWaterfall timingWaterfall;
     private SyncManager syncManager;
 
     private GETRequest getRequest;
     private DataRequest dataRequest;
     private DELETERequest deleteRequest;
     private EverestCodeArea responseArea;
+    // The request last sent from this tab, as saved to the history
+    private SyncManager.SavedState sentState;
     private ResponseLayer visibleLayer;
     private HashMap<Tab, DashboardState> tabStateMap;
     private TabPane tabPane;
@@ -116,7 +136,7 @@ public class DashboardController implements Initializable {
     }
 
     public enum ResponseTab {
-        BODY, VISUALIZER, HEADERS
+        BODY, VISUALIZER, HEADERS, TIMING
     }
 
     public enum ComposerTab {
@@ -152,6 +172,10 @@ public class DashboardController implements Initializable {
         }
 
         snackbar = new JFXSnackbar(dashboard);
+        stopStreamButton.setOnAction(e -> {
+            if (requestManager != null)
+                requestManager.cancel();
+        });
 
         showLayer(ResponseLayer.PROMPT);
         httpMethodBox.getItems().addAll(
@@ -217,10 +241,29 @@ public class DashboardController implements Initializable {
 
         responseHeadersViewer = new ResponseHeadersViewer();
         responseHeadersTab.setContent(responseHeadersViewer);
+
+        timingWaterfall = new TimingWaterfall();
+        timingTab.setContent(timingWaterfall);
+
+        // Shows live statistics of the connection pool and the request dispatcher on hovering over the response time
+        Tooltip connectionStatsTooltip = new Tooltip();
+        connectionStatsTooltip.setOnShowing(e -> connectionStatsTooltip.setText(
+                ClientFactory.getConnectionPoolStats() + "\n"
+                        + "Requests: " + RequestManagersPool.getActiveRequests() + " active, "
+                        + RequestManagersPool.getQueueDepth() + " queued, "
+                        + String.format("%.1f ms average wait", RequestManagersPool.getAverageWaitTime())));
+        responseTime.setTooltip(connectionStatsTooltip);
+
+        MenuItem loadTestItem = new MenuItem("Load test...");
+        loadTestItem.setOnAction(e -> startLoadTest());
+        sendButton.setContextMenu(new ContextMenu(loadTestItem));
     }
 
     @FXML
     void sendRequest() {
+        cancelLoadTest();
+        stopStreamViewer();
+
         if (requestManager != null) {
             while (requestManager.isRunning())
                 requestManager.cancel();
@@ -228,85 +271,28 @@ public class DashboardController implements Initializable {
         }
 
         try {
-            String address = addressField.getText().trim();
-
-            if (address.equals("")) {
-                showLayer(ResponseLayer.PROMPT);
-                snackbar.show("Please enter an address.", 3000);
+            EverestRequest request = buildRequest();
+            if (request == null)
                 return;
-            }
-
-            // Prepends "https://" to the address if not already done.
-            if (!(address.startsWith("https://") || address.startsWith("http://"))) {
-                address = "https://" + address;
-                responseArea.requestFocus();
-            }
-
-            // Set again in case the address is manipulated by the above logic
-            addressField.setText(address);
-
-            switch (httpMethodBox.getValue()) {
-                case HTTPConstants.GET:
-                    if (getRequest == null)
-                        getRequest = new GETRequest();
-
-                    getRequest.setTarget(address);
-                    getRequest.setAuthProvider(authTabController.getAuthProvider());
-                    getRequest.setHeaders(headerTabController.getHeaders());
 
-                    requestManager = RequestManagersPool.manager();
-                    requestManager.setRequest(getRequest);
-                    break;
-                case HTTPConstants.POST:
-                case HTTPConstants.PUT:
-                case HTTPConstants.PATCH:
-                    if (dataRequest == null)
-                        dataRequest = new DataRequest();
-
-                    dataRequest.setRequestType(httpMethodBox.getValue());
-                    dataRequest.setTarget(address);
-                    dataRequest.setAuthProvider(authTabController.getAuthProvider());
-                    dataRequest.setHeaders(headerTabController.getHeaders());
-
-                    if (bodyTabController.rawTab.isSelected()) {
-                        dataRequest.setContentType(HTTPConstants.getComplexContentType(bodyTabController.rawInputTypeBox.getValue()));
-                        dataRequest.setBody(bodyTabController.rawInputArea.getText());
-                    } else if (bodyTabController.formTab.isSelected()) {
-                        dataRequest.setStringTuples(bodyTabController.formDataTabController.getStringTuples());
-                        dataRequest.setFileTuples(bodyTabController.formDataTabController.getFileTuples());
-                        dataRequest.setContentType(MediaType.MULTIPART_FORM_DATA);
-                    } else if (bodyTabController.binaryTab.isSelected()) {
-                        dataRequest.setBody(bodyTabController.filePathField.getText());
-                        dataRequest.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-                    } else if (bodyTabController.urlTab.isSelected()) {
-                        dataRequest.setStringTuples(bodyTabController.urlTabController.getStringTuples());
-                        dataRequest.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-                    }
-
-                    requestManager = RequestManagersPool.manager();
-                    requestManager.setRequest(dataRequest);
-                    break;
-                case HTTPConstants.DELETE:
-                    if (deleteRequest == null)
-                        deleteRequest = new DELETERequest();
-
-                    deleteRequest.setTarget(address);
-                    deleteRequest.setAuthProvider(authTabController.getAuthProvider());
-                    deleteRequest.setHeaders(headerTabController.getHeaders());
-
-                    requestManager = RequestManagersPool.manager();
-                    requestManager.setRequest(deleteRequest);
-                    break;
-                default:
-                    showLayer(ResponseLayer.PROMPT);
-            }
+            requestManager = RequestManagersPool.manager();
+            requestManager.setRequest(request);
             cancelButton.setOnAction(e -> requestManager.cancel());
             requestManager.addHandlers(this::whileRunning, this::onSucceeded, this::onFailed, this::onCancelled);
+            requestManager.setOnStreaming(this::onStreaming);
             requestManager.start();
-            syncManager.saveState(getState().composer);
+
+            sentState = syncManager.saveState(getState().composer);
         } catch (MalformedURLException MURLE) {
             showLayer(ResponseLayer.PROMPT);
             snackbar.show("Invalid address. Please verify and try again.", 3000);
+        } catch (RejectedExecutionException REE) {
+            // Returns the manager to the pool since it never got to run
+            requestManager.cancel();
+            showLayer(ResponseLayer.PROMPT);
+            snackbar.show("Too many requests in flight. Please wait for some of them to finish.", 3000);
+            LoggingService.logWarning("Request rejected. Queue depth: " + RequestManagersPool.getQueueDepth()
+                    + ", Active requests: " + RequestManagersPool.getActiveRequests(), REE, LocalDateTime.now());
         } catch (Exception E) {
             LoggingService.logSevere("Request execution failed.", E, LocalDateTime.now());
             errorTitle.setText("Oops... That's embarrassing!");
@@ -315,8 +301,187 @@ public class DashboardController implements Initializable {
         }
     }
 
+    /**
+     * Converts the current state of the composer into an EverestRequest.
+     *
+     * @return The request, or null if no address was entered.
+     */
+    private EverestRequest buildRequest() throws MalformedURLException {
+        String address = addressField.getText().trim();
+
+        if (address.equals("")) {
+            showLayer(ResponseLayer.PROMPT);
+            snackbar.show("Please enter an address.", 3000);
+            return null;
+        }
+
+        // Prepends "https://" to the address if not already done.
+        if (!(address.startsWith("https://") || address.startsWith("http://"))) {
+            address = "https://" + address;
+            responseArea.requestFocus();
+        }
+
+        // Set again in case the address is manipulated by the above logic
+        addressField.setText(address);
+
+        switch (httpMethodBox.getValue()) {
+            case HTTPConstants.GET:
+                if (getRequest == null)
+                    getRequest = new GETRequest();
+
+                getRequest.setTarget(address);
+                getRequest.setAuthProvider(authTabController.getAuthProvider());
+                getRequest.setHeaders(headerTabController.getHeaders());
+
+                return getRequest;
+            case HTTPConstants.POST:
+            case HTTPConstants.PUT:
+            case HTTPConstants.PATCH:
+                if (dataRequest == null)
+                    dataRequest = new DataRequest();
+
+                dataRequest.setRequestType(httpMethodBox.getValue());
+                dataRequest.setTarget(address);
+                dataRequest.setAuthProvider(authTabController.getAuthProvider());
+                dataRequest.setHeaders(headerTabController.getHeaders());
+
+                if (bodyTabController.rawTab.isSelected()) {
+                    dataRequest.setContentType(HTTPConstants.getComplexContentType(bodyTabController.rawInputTypeBox.getValue()));
+                    dataRequest.setBody(bodyTabController.rawInputArea.getText());
+                } else if (bodyTabController.formTab.isSelected()) {
+                    dataRequest.setStringTuples(bodyTabController.formDataTabController.getStringTuples());
+                    dataRequest.setFileTuples(bodyTabController.formDataTabController.getFileTuples());
+                    dataRequest.setContentType(MediaType.MULTIPART_FORM_DATA);
+                } else if (bodyTabController.binaryTab.isSelected()) {
+                    dataRequest.setBody(bodyTabController.filePathField.getText());
+                    dataRequest.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+                } else if (bodyTabController.urlTab.isSelected()) {
+                    dataRequest.setStringTuples(bodyTabController.urlTabController.getStringTuples());
+                    dataRequest.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+                }
+
+                return dataRequest;
+            case HTTPConstants.DELETE:
+                if (deleteRequest == null)
+                    deleteRequest = new DELETERequest();
+
+                deleteRequest.setTarget(address);
+                deleteRequest.setAuthProvider(authTabController.getAuthProvider());
+                deleteRequest.setHeaders(headerTabController.getHeaders());
+
+                return deleteRequest;
+            default:
+                showLayer(ResponseLayer.PROMPT);
+                return null;
+        }
+    }
+
+    /**
+     * Asks for the number of iterations and the concurrency, and then replays the composed request
+     * through a LoadTest. The report is shown in the response area once the test completes.
+     */
+    private void startLoadTest() {
+        TextField iterationsField = new TextField("100");
+        TextField concurrencyField = new TextField("10");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.addRow(0, new Label("Requests"), iterationsField);
+        grid.addRow(1, new Label("Concurrency"), concurrencyField);
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Load test");
+        dialog.setHeaderText("Send the request repeatedly and measure the latencies.");
+        dialog.getDialogPane().setContent(grid);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK)
+            return;
+
+        int iterations, concurrency;
+        try {
+            iterations = Integer.parseInt(iterationsField.getText().trim());
+            concurrency = Integer.parseInt(concurrencyField.getText().trim());
+            if (iterations < 1 || concurrency < 1)
+                throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            snackbar.show("Requests and concurrency must be positive numbers.", 3000);
+            return;
+        }
+
+        if (concurrency > LoadTest.MAX_CONCURRENCY) {
+            snackbar.show("Concurrency cannot exceed " + LoadTest.MAX_CONCURRENCY + ".", 3000);
+            return;
+        }
+
+        // Cancels any running request or load test
+        cancelLoadTest();
+        stopStreamViewer();
+        if (requestManager != null) {
+            while (requestManager.isRunning())
+                requestManager.cancel();
+            requestManager.reset();
+        }
+
+        try {
+            EverestRequest request = buildRequest();
+            if (request == null)
+                return;
+
+            LoadTest test = new LoadTest(request, iterations, concurrency);
+            test.setOnSucceeded(e -> showLoadTestReport(test.getValue()));
+            test.setOnFailed(e -> {
+                LoggingService.logWarning("Load test could not be completed.", (Exception) test.getException(), LocalDateTime.now());
+                errorTitle.setText("Load test failed.");
+                errorDetails.setText(String.valueOf(test.getException().getMessage()));
+                showLayer(ResponseLayer.ERROR);
+            });
+            test.setOnCancelled(e -> showLayer(ResponseLayer.PROMPT));
+            loadTest = test;
+
+            progressBar.progressProperty().bind(test.progressProperty());
+            cancelButton.setOnAction(e -> test.cancel());
+            responseArea.clear();
+            showLayer(ResponseLayer.LOADING);
+
+            Thread thread = new Thread(test, "Everest load test");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (MalformedURLException MURLE) {
+            showLayer(ResponseLayer.PROMPT);
+            snackbar.show("Invalid address. Please verify and try again.", 3000);
+        }
+    }
+
+    private void cancelLoadTest() {
+        if (loadTest != null) {
+            loadTest.cancel();
+            loadTest = null;
+        }
+    }
+
+    private void showLoadTestReport(LoadTestReport report) {
+        loadTest = null;
+
+        showLayer(ResponseLayer.RESPONSE);
+        visualizerTab.setDisable(true);
+        // Stops building the tree of the previous response
+        visualizer.clear();
+        responseArea.setText(report.toString(), HighlighterFactory.getHighlighter(HTTPConstants.PLAIN_TEXT));
+        responseTypeBox.setValue(HTTPConstants.PLAIN_TEXT);
+
+        statusCode.setText(Integer.toString(report.getMostFrequentStatus()));
+        statusCodeDescription.setText(String.format("%.1f%% errors", report.getErrorRate() * 100));
+        responseTime.setText(Math.round(report.getLatency(50)) + " ms");
+        responseSize.setText(report.getAverageSize() + " B");
+        responseHeadersViewer.populate(new HashMap<>());
+        timingWaterfall.populate(null);
+    }
+
     // TODO: Clean this method
     private void onFailed(Event event) {
+        stopStreamViewer();
         showLayer(ResponseLayer.ERROR);
         Throwable throwable = requestManager.getException();
         Exception exception = (Exception) throwable;
@@ -349,20 +514,91 @@ public class DashboardController implements Initializable {
     }
 
     private void onCancelled(Event event) {
-        showLayer(ResponseLayer.PROMPT);
+        if (streamViewer != null) {
+            // Keeps the events received till the stream was stopped.
+            stopStreamViewer();
+            showStreamStats(requestManager.getValue());
+        } else {
+            showLayer(ResponseLayer.PROMPT);
+        }
+
         requestManager.reset();
         addressField.requestFocus();
     }
 
+    /**
+     * Shows the events of a streaming response as they arrive, from the moment its headers do.
+     * The rest of the response is shown once the server ends the stream, as with any other response.
+     */
+    private void onStreaming(EverestResponse response) {
+        stopStreamViewer();
+        showLayer(ResponseLayer.RESPONSE);
+        visualizerTab.setDisable(true);
+        // Stops building the tree of the previous response
+        visualizer.clear();
+        responseTypeBox.setValue(HTTPConstants.PLAIN_TEXT);
+
+        statusCode.setText(Integer.toString(response.getStatusCode()));
+        statusCodeDescription.setText(EverestResponse.getReasonPhrase(response.getStatusCode()));
+        responseTime.setText(Long.toString(response.getTime()) + " ms");
+        responseSize.setText("0 B");
+        responseSize.setTooltip(new Tooltip("The size of a stream is known once it ends."));
+        showEncoding(null);
+        showCacheStatus(null);
+        showProtocol(response.getProtocol());
+        responseHeadersViewer.populate(response);
+        timingWaterfall.populate(response.getTiming());
+
+        responseStreamStats.setVisible(true);
+        responseStreamStats.setManaged(true);
+        stopStreamButton.setVisible(true);
+        stopStreamButton.setManaged(true);
+
+        streamViewer = new ResponseStreamViewer(response.getStream(), responseArea, responseStreamStats);
+        streamViewer.start();
+    }
+
+    private void stopStreamViewer() {
+        if (streamViewer == null)
+            return;
+
+        streamViewer.stop();
+        streamViewer = null;
+    }
+
+    /**
+     * Hides the statistics of the last stream, unless the response shown is still that stream.
+     */
+    private void showStreamStats(EverestResponse response) {
+        boolean streamed = response != null && response.getStream() != null;
+        responseStreamStats.setVisible(streamed);
+        responseStreamStats.setManaged(streamed);
+        stopStreamButton.setVisible(false);
+        stopStreamButton.setManaged(false);
+
+        if (streamed && streamViewer == null)
+            responseStreamStats.setText(response.getStream().getEventCount() + " events, ended");
+    }
+
     private void onSucceeded(Event event) {
         showLayer(ResponseLayer.RESPONSE);
-        showResponse(requestManager.getValue());
+        EverestResponse response = requestManager.getValue();
+        showResponse(response);
+
+        if (response != null)
+            syncManager.saveTimings(sentState, response.getTiming());
+
+        // The code area now holds the text, so the store is no longer needed.
+        if (response != null)
+            response.dispose();
+
         requestManager.reset();
     }
 
     private void whileRunning(Event event) {
         progressBar.requestLayout();
         progressBar.progressProperty().bind(requestManager.progressProperty());
+        loadingDetails.textProperty().bind(requestManager.messageProperty());
         responseArea.clear();
         showLayer(ResponseLayer.LOADING);
     }
@@ -407,8 +643,71 @@ public class DashboardController implements Initializable {
         statusCode.setText(Integer.toString(response.getStatusCode()));
         statusCodeDescription.setText(EverestResponse.getReasonPhrase(response.getStatusCode()));
         responseTime.setText(Long.toString(response.getTime()) + " ms");
-        responseSize.setText(Integer.toString(response.getSize()) + " B");
+        responseSize.setText(Long.toString(response.getWireSize()) + " B");
+        responseSize.setTooltip(new Tooltip(getSizeDetails(response)));
+        showEncoding(response);
+        showCacheStatus(response);
+        showProtocol(response.getProtocol());
+        showStreamStats(response);
         responseHeadersViewer.populate(response);
+        timingWaterfall.populate(response.getTiming());
+    }
+
+    private static String getSizeDetails(EverestResponse response) {
+        StringBuilder details = new StringBuilder();
+        details.append("Received: ").append(response.getWireSize()).append(" B\n");
+        details.append("Decoded: ").append(response.getDecodedSize()).append(" B\n");
+
+        if (response.getContentLength() >= 0)
+            details.append("Content-Length: ").append(response.getContentLength()).append(" B\n");
+
+        if (response.getContentEncoding() != null)
+            details.append("Decoded ").append(response.getContentEncoding()).append(" in ")
+                    .append(TimingBreakdown.toMillis(response.getDecodeTime())).append("\n");
+
+        details.append(String.format("Transfer rate: %.1f KB/s", response.getTransferRate() / 1024));
+        return details.toString();
+    }
+
+    /**
+     * Shows how well the body was compressed, and how long it took to decode, if it was encoded.
+     */
+    private void showEncoding(EverestResponse response) {
+        boolean encoded = response != null && response.getContentEncoding() != null;
+        responseEncoding.setVisible(encoded);
+        responseEncoding.setManaged(encoded);
+
+        if (!encoded)
+            return;
+
+        double ratio = response.getWireSize() == 0 ? 1 : (double) response.getDecodedSize() / response.getWireSize();
+        responseEncoding.setText(String.format("%s %d B \u2192 %d B (%.1fx) in %s", response.getContentEncoding(),
+                response.getWireSize(), response.getDecodedSize(), ratio,
+                TimingBreakdown.toMillis(response.getDecodeTime())));
+    }
+
+    /**
+     * Tells whether the response was served from the cache, with or without revalidating it.
+     */
+    private void showCacheStatus(EverestResponse response) {
+        boolean cached = response != null && response.getCacheStatus() != EverestResponse.CacheStatus.NETWORK;
+        responseCacheStatus.setVisible(cached);
+        responseCacheStatus.setManaged(cached);
+
+        if (!cached)
+            return;
+
+        responseCacheStatus.setText(response.getCacheStatus() == EverestResponse.CacheStatus.CACHE
+                ? "Served from cache" : "Revalidated (304)");
+    }
+
+    /**
+     * Shows the protocol negotiated for the response, if it was received over the network.
+     */
+    private void showProtocol(String protocol) {
+        responseProtocol.setVisible(protocol != null);
+        responseProtocol.setManaged(protocol != null);
+        responseProtocol.setText(protocol);
     }
 
     private void showResponse(DashboardState state) {
@@ -416,8 +715,14 @@ public class DashboardController implements Initializable {
         statusCode.setText(Integer.toString(state.statusCode));
         statusCodeDescription.setText(EverestResponse.getReasonPhrase(state.statusCode));
         responseTime.setText(Long.toString(state.responseTime) + " ms");
-        responseSize.setText(Integer.toString(state.responseSize) + " B");
+        responseSize.setText(Long.toString(state.responseSize) + " B");
+        responseSize.setTooltip(null);
+        showEncoding(null);
+        showCacheStatus(null);
+        showProtocol(null);
+        showStreamStats(null);
         responseHeadersViewer.populate(state.responseHeaders);
+        timingWaterfall.populate(state.timing);
 
         if (state.visibleResponseTab != null) {
             int tab;
@@ -428,6 +733,9 @@ public class DashboardController implements Initializable {
                 case HEADERS:
                     tab = 2;
                     break;
+                case TIMING:
+                    tab = 3;
+                    break;
                 default:
                     tab = 0;
             }
@@ -437,6 +745,15 @@ public class DashboardController implements Initializable {
     }
 
     private void prettifyResponseBody(String body, String contentType) {
+        prettifyResponseBody(body, contentType, null);
+    }
+
+    /**
+     * @param document The body already parsed as JSON, if it was. Otherwise, JSON bodies are parsed here.
+     *                 The one parse provides the text, its highlighting and the tokens the visualizer
+     *                 builds its tree from. It is disposed here, unless the visualizer takes it over.
+     */
+    private void prettifyResponseBody(String body, String contentType, JSONDocument document) {
         showLayer(ResponseLayer.RESPONSE);
         visualizerTab.setDisable(true);
 
@@ -452,8 +769,10 @@ public class DashboardController implements Initializable {
                 switch (contentType.toLowerCase()) {
                     case "application/json":
                         simplifiedContentType = HTTPConstants.JSON;
-                        visualizerTab.setDisable(false);
-                        visualizer.populate(body);
+                        if (document == null && body != null && !body.isEmpty())
+                            document = JSONDocument.parse(new StringReader(body));
+
+                        visualizerTab.setDisable(document == null || document.getTokenCount() == 0);
                         break;
                     case "application/xml":
                         simplifiedContentType = HTTPConstants.XML;
@@ -480,39 +799,126 @@ public class DashboardController implements Initializable {
                 simplifiedContentType = HTTPConstants.PLAIN_TEXT;
             }
 
-            if (body == null || body.equals(""))
-                body = "No body returned in the response.";
+            Highlighter highlighter = HighlighterFactory.getHighlighter(simplifiedContentType);
+
+            if (document != null && document.getLength() > 0 && highlighter instanceof JSONHighlighter) {
+                JSONHighlighter jsonHighlighter = (JSONHighlighter) highlighter;
+                responseArea.setText(document.getText(), jsonHighlighter, jsonHighlighter.computeHighlighting(document));
+            } else {
+                if (body == null || body.equals(""))
+                    body = "No body returned in the response.";
+
+                responseArea.setText(body, FormatterFactory.getHighlighter(simplifiedContentType), highlighter);
+            }
 
-            responseArea.setText(body,
-                    FormatterFactory.getHighlighter(simplifiedContentType),
-                    HighlighterFactory.getHighlighter(simplifiedContentType));
+            // The tree is prefetched in the background once the body is shown.
+            if (document != null && !visualizerTab.isDisable()) {
+                visualizer.populate(document);
+                document = null;
+            }
 
             responseTypeBox.setValue(simplifiedContentType);
         } catch (Exception e) {
-            String errorMessage = "Response could not be parsed.";
-            snackbar.show(errorMessage, 5000);
-            LoggingService.logSevere(errorMessage, e, LocalDateTime.now());
-            errorTitle.setText("Parsing Error");
-            errorDetails.setText(errorMessage);
-            showLayer(ResponseLayer.ERROR);
+            showParseError(e);
+        } finally {
+            if (document != null)
+                document.dispose();
         }
     }
 
+    private void showParseError(Exception e) {
+        String errorMessage = "Response could not be parsed.";
+        snackbar.show(errorMessage, 5000);
+        LoggingService.logSevere(errorMessage, e, LocalDateTime.now());
+        errorTitle.setText("Parsing Error");
+        errorDetails.setText(errorMessage);
+        showLayer(ResponseLayer.ERROR);
+    }
+
 
     private void prettifyResponseBody(EverestResponse response) {
+        if (response.getDownloadFile() != null) {
+            showDownload(response);
+            return;
+        }
+
+        if (response.getStream() != null) {
+            showStream(response);
+            return;
+        }
+
         String type;
         if (response.getMediaType() != null)
             type = response.getMediaType().toString();
         else
             type = "";
 
-        String responseBody = response.getBody();
+        JSONDocument document = null;
+        if (MediaType.APPLICATION_JSON_TYPE.isCompatible(response.getMediaType())) {
+            try {
+                // Parsed by the RequestManager on its worker thread, so this only takes the document over.
+                document = response.releaseJSONDocument();
+            } catch (IOException e) {
+                showParseError(e);
+                return;
+            }
+        }
+
+        String responseBody = null;
+        if (document == null) {
+            try {
+                responseBody = response.getBody();
+            } catch (IOException e) {
+                LoggingService.logSevere("Could not read response body.", e, LocalDateTime.now());
+            }
+        }
 
-        prettifyResponseBody(responseBody, type);
+        prettifyResponseBody(responseBody, type, document);
+    }
+
+    /**
+     * Shows the events of a stream which has ended. They are already in the response pane if it was followed live.
+     */
+    private void showStream(EverestResponse response) {
+        showLayer(ResponseLayer.RESPONSE);
+        visualizerTab.setDisable(true);
+        responseTypeBox.setValue(HTTPConstants.PLAIN_TEXT);
+
+        if (streamViewer != null)
+            stopStreamViewer();
+        else
+            responseArea.setText(response.getStream().getText(), HighlighterFactory.getHighlighter(HTTPConstants.PLAIN_TEXT));
+    }
+
+    /**
+     * Shows where a body which was saved to a file went, along with a hex dump of its first bytes.
+     */
+    private void showDownload(EverestResponse response) {
+        File file = response.getDownloadFile();
+        prettifyResponseBody(response.describeDownload(), MediaType.TEXT_PLAIN);
+
+        if (Desktop.getDesktop().isSupported(Desktop.Action.OPEN)) {
+            snackbar.show("Response saved to file. Open it?", "OPEN", 5000, e -> {
+                snackbar.close();
+                new Thread(() -> {
+                    try {
+                        Desktop.getDesktop().open(file);
+                    } catch (Exception ex) {
+                        LoggingService.logWarning("Could not open saved response: " + file, ex, LocalDateTime.now());
+                    }
+                }).start();
+            });
+        }
     }
 
     @FXML
     private void clearResponseArea() {
+        if (streamViewer != null) {
+            // Clearing a live stream also stops it.
+            stopStreamViewer();
+            requestManager.cancel();
+        }
+
         responseArea.clear();
         showLayer(ResponseLayer.PROMPT);
         addressField.requestFocus();
@@ -649,6 +1055,8 @@ public class DashboardController implements Initializable {
                 return ResponseTab.VISUALIZER;
             case 2:
                 return ResponseTab.HEADERS;
+            case 3:
+                return ResponseTab.TIMING;
             default:
                 return ResponseTab.BODY;
         }
@@ -682,15 +1090,22 @@ public class DashboardController implements Initializable {
         dashboardState.visibleResponseLayer = visibleLayer;
         dashboardState.visibleComposerTab = getVisibleComposerTab();
 
-        switch (visibleLayer) {
+        if (streamViewer != null) {
+            // A live stream is handed over like any other running request, and is followed again on return.
+            stopStreamViewer();
+            dashboardState.visibleResponseLayer = ResponseLayer.LOADING;
+        }
+
+        switch (dashboardState.visibleResponseLayer) {
             case RESPONSE:
                 dashboardState.visibleResponseTab = getVisibleResponseTab();
                 dashboardState.responseHeaders = responseHeadersViewer.getHeaders();
+                dashboardState.timing = timingWaterfall.getTiming();
                 dashboardState.statusCode = Integer.parseInt(statusCode.getText());
 
                 String temp = responseSize.getText();
                 temp = temp.substring(0, temp.length() - 2);
-                dashboardState.responseSize = Integer.parseInt(temp);
+                dashboardState.responseSize = Long.parseLong(temp);
 
                 temp = responseTime.getText();
                 temp = temp.substring(0, temp.length() - 3);
@@ -704,6 +1119,13 @@ public class DashboardController implements Initializable {
                 dashboardState.errorDetails = errorDetails.getText();
                 break;
             case LOADING:
+                if (loadTest != null) {
+                    // Load tests only report to the Dashboard that started them
+                    cancelLoadTest();
+                    dashboardState.visibleResponseLayer = ResponseLayer.PROMPT;
+                    break;
+                }
+
                 dashboardState.handOverRequest(requestManager);
                 requestManager = null;
                 break;
@@ -774,7 +1196,13 @@ public class DashboardController implements Initializable {
                     requestManager = state.getRequestManager();
                     requestManager.removeHandlers();
                     requestManager.addHandlers(this::whileRunning, this::onSucceeded, this::onFailed, this::onCancelled);
-                    showLayer(ResponseLayer.LOADING);
+                    requestManager.setOnStreaming(this::onStreaming);
+
+                    EverestResponse streamingResponse = requestManager.getValue();
+                    if (streamingResponse != null && streamingResponse.getStream() != null)
+                        onStreaming(streamingResponse);
+                    else
+                        showLayer(ResponseLayer.LOADING);
                     break;
                 default:
                     showLayer(ResponseLayer.PROMPT);
@@ -47,7 +47,13 @@ public class HistoryItemController implements Initializable, Searchable<Composer
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        tooltip.textProperty().bind(address.textProperty());
+        // Timings arrive once the response does, so the text is only built when the tooltip is shown.
+        tooltip.setOnShowing(e -> {
+            if (state != null && state.timings != null)
+                tooltip.setText(address.getText() + "\n" + state.timings.toString());
+            else
+                tooltip.setText(address.getText());
+        });
     }
 
     public ComposerState getState() {
@@ -78,6 +84,10 @@ public class HistoryItemController implements Initializable, Searchable<Composer
     }
 
     public int getRelativityIndex(String searchString) {
+        return getRelativityIndex(state, searchString);
+    }
+
+    static int getRelativityIndex(ComposerState state, String searchString) {
         int index = 0;
         searchString = searchString.toLowerCase();
         String comparisonString;
@@ -109,16 +119,16 @@ public class HistoryItemController implements Initializable, Searchable<Composer
             index += 7;
 
         // Checks for a match in the params
-        for (FieldState state : state.params) {
-            if (state.key.toLowerCase().contains(searchString) ||
-                    state.value.toLowerCase().contains(searchString))
+        for (FieldState field : state.params) {
+            if (field.key.toLowerCase().contains(searchString) ||
+                    field.value.toLowerCase().contains(searchString))
                 index += 7;
         }
 
         // Checks for a match in the headers
-        for (FieldState state : state.headers) {
-            if (state.key.toLowerCase().contains(searchString) ||
-                    state.value.toLowerCase().contains(searchString))
+        for (FieldState field : state.headers) {
+            if (field.key.toLowerCase().contains(searchString) ||
+                    field.value.toLowerCase().contains(searchString))
                 index += 7;
         }
 
@@ -137,22 +147,22 @@ public class HistoryItemController implements Initializable, Searchable<Composer
                 index += 8;
 
             // Checks for match in string tuples
-            for (FieldState state : state.urlStringTuples) {
-                if (state.key.toLowerCase().contains(searchString) ||
-                        state.value.toLowerCase().contains(searchString))
+            for (FieldState field : state.urlStringTuples) {
+                if (field.key.toLowerCase().contains(searchString) ||
+                        field.value.toLowerCase().contains(searchString))
                     index += 8;
             }
 
             // Checks for match in string and file tuples
-            for (FieldState state : state.formStringTuples) {
-                if (state.key.toLowerCase().contains(searchString) ||
-                        state.value.toLowerCase().contains(searchString))
+            for (FieldState field : state.formStringTuples) {
+                if (field.key.toLowerCase().contains(searchString) ||
+                        field.value.toLowerCase().contains(searchString))
                     index += 8;
             }
 
-            for (FieldState state : state.formFileTuples) {
-                if (state.key.toLowerCase().contains(searchString) ||
-                        state.value.toLowerCase().contains(searchString))
+            for (FieldState field : state.formFileTuples) {
+                if (field.key.toLowerCase().contains(searchString) ||
+                        field.value.toLowerCase().contains(searchString))
                     index += 8;
             }
         }
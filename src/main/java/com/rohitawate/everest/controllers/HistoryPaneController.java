@@ -33,26 +33,37 @@ public class HistoryPaneController extends SearchablePaneController<ComposerStat
 	private SyncManager syncManager;
 
 	@Override
-    protected List<ComposerState> loadInitialEntries() {
-		return syncManager.getHistory();
+    protected List<ComposerState> loadEntries(ComposerState lastLoaded, int limit) {
+		return syncManager.getHistory(lastLoaded == null ? Integer.MAX_VALUE : lastLoaded.historyID, limit);
 	}
 
-    protected SearchEntry<ComposerState> createEntryFromState(ComposerState state) throws IOException {
+	@Override
+    protected SearchEntry<ComposerState> createEntry() throws IOException {
 		FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/homewindow/HistoryItem.fxml"));
 		Parent historyItem = loader.load();
 
 		HistoryItemController controller = loader.getController();
-		controller.setState(state);
 
-		// Clicking on HistoryItem opens it up in a new tab
+		// Clicking on HistoryItem opens it up in a new tab.
+		// The item is re-used as the list scrolls, so the state is read when clicked.
 		historyItem.setOnMouseClicked(mouseEvent -> {
-			if (mouseEvent.getButton() == MouseButton.PRIMARY)
-				handleClick(state);
+			if (mouseEvent.getButton() == MouseButton.PRIMARY && controller.getState() != null)
+				handleClick(controller.getState());
 		});
 
 		return new SearchEntry<>(historyItem, controller);
 	}
 
+	@Override
+	protected List<ComposerState> searchEntries(String searchString, int limit) {
+		return syncManager.searchHistory(searchString, limit);
+	}
+
+	@Override
+	protected int getRelativityIndex(ComposerState state, String searchString) {
+		return HistoryItemController.getRelativityIndex(state, searchString);
+	}
+
     private void handleClick(ComposerState state) {
         for (Consumer<ComposerState> consumer : stateClickHandler) {
 			consumer.accept(state);
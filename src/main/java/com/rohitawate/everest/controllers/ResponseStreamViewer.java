@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.controllers;
+
+import com.rohitawate.everest.controllers.codearea.EverestCodeArea;
+import com.rohitawate.everest.controllers.codearea.highlighters.HighlighterFactory;
+import com.rohitawate.everest.models.requests.HTTPConstants;
+import com.rohitawate.everest.models.responses.ResponseStream;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.scene.control.Label;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends the events of a streaming response to the response pane as they arrive.
+ * <p>
+ * New lines are picked up on every tick, rather than once per event, so that fast streams
+ * do not flood the JavaFX thread. Only as many lines as the stream retains are kept in the pane.
+ */
+class ResponseStreamViewer {
+    private static final Duration REFRESH_INTERVAL = Duration.millis(100);
+
+    private final ResponseStream stream;
+    private final EverestCodeArea area;
+    private final Label stats;
+    private final Timeline timeline;
+
+    // Number of the next line of the stream to be appended
+    private long nextLine;
+
+    // Number of events at the start of the current second, from which the rate is computed
+    private long rateEventCount;
+    private long rateStartTime;
+    private double rate;
+
+    ResponseStreamViewer(ResponseStream stream, EverestCodeArea area, Label stats) {
+        this.stream = stream;
+        this.area = area;
+        this.stats = stats;
+        this.timeline = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> refresh()));
+        this.timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    void start() {
+        area.setText("", HighlighterFactory.getHighlighter(HTTPConstants.PLAIN_TEXT));
+        rateStartTime = System.nanoTime();
+        refresh();
+        timeline.play();
+    }
+
+    /**
+     * Stops following the stream, after appending the lines which arrived since the last tick.
+     */
+    void stop() {
+        timeline.stop();
+        refresh();
+    }
+
+    private void refresh() {
+        List<String> lines = new ArrayList<>();
+        nextLine = stream.getLines(nextLine, lines);
+
+        if (!lines.isEmpty()) {
+            // Follows the stream only if the caret was not moved away from its end.
+            boolean following = area.getCaretPosition() == area.getLength();
+
+            StringBuilder text = new StringBuilder();
+            for (String line : lines) {
+                if (text.length() > 0 || area.getLength() > 0)
+                    text.append('\n');
+                text.append(line);
+            }
+            area.appendText(text.toString());
+
+            int excess = area.getParagraphs().size() - stream.getCapacity();
+            if (excess > 0)
+                area.deleteText(0, area.getAbsolutePosition(excess, 0));
+
+            if (following) {
+                area.moveTo(area.getLength());
+                area.requestFollowCaret();
+            }
+        }
+
+        long now = System.nanoTime();
+        if (now - rateStartTime >= 1_000_000_000L) {
+            long eventCount = stream.getEventCount();
+            rate = (eventCount - rateEventCount) * 1_000_000_000.0 / (now - rateStartTime);
+            rateEventCount = eventCount;
+            rateStartTime = now;
+        }
+
+        if (stream.isFinished())
+            stats.setText(String.format("%d events, ended", stream.getEventCount()));
+        else
+            stats.setText(String.format("%d events, %.1f/s", stream.getEventCount(), rate));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.controllers;
+
+import com.rohitawate.everest.models.responses.TimingBreakdown;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+/**
+ * Shows the phases of a request as a waterfall, with every phase starting where the previous one ended.
+ */
+class TimingWaterfall extends ScrollPane {
+    private static final double TRACK_WIDTH = 400;
+
+    private static final String labelStyleClass = "timing-label";
+    private static final String phaseLabelStyleClass = "timing-phase-label";
+    private static final String durationLabelStyleClass = "timing-duration-label";
+    private static final String barStyleClass = "timing-bar";
+
+    private final GridPane grid;
+    private final Label note;
+
+    private TimingBreakdown timing;
+
+    TimingWaterfall() {
+        grid = new GridPane();
+        grid.setHgap(20);
+        grid.setVgap(10);
+
+        note = new Label();
+        note.getStyleClass().addAll(labelStyleClass, durationLabelStyleClass);
+
+        VBox container = new VBox(20, grid, note);
+        container.setPadding(new Insets(10, 20, 10, 20));
+        this.setContent(container);
+
+        this.setFitToHeight(true);
+        this.setFitToWidth(true);
+    }
+
+    void populate(TimingBreakdown timing) {
+        this.timing = timing;
+        grid.getChildren().clear();
+        note.setText("");
+
+        if (timing == null) {
+            note.setText("No timings were recorded for this response.");
+            return;
+        }
+
+        double total = Math.max(timing.getTotalTime(), 1);
+        double offset = 0;
+        int row = 0;
+
+        if (timing.hasConnectionPhases()) {
+            offset = addPhase(row++, "DNS", timing.getDnsTime(), offset, total);
+            offset = addPhase(row++, "Connect", timing.getConnectTime(), offset, total);
+            offset = addPhase(row++, "TLS", timing.getTlsTime(), offset, total);
+
+            if (timing.isConnectionReused())
+                note.setText("Re-used an open connection from the pool.");
+        } else {
+            note.setText("The selected connector does not report DNS, connect and TLS timings. They are included in 'Waiting'.");
+        }
+
+        offset = addPhase(row++, "Waiting", timing.getWaitingTime(), offset, total);
+        addPhase(row++, "Download", timing.getDownloadTime(), offset, total);
+
+        Label totalLabel = new Label("Total");
+        totalLabel.getStyleClass().addAll(labelStyleClass, phaseLabelStyleClass);
+        Label totalDuration = new Label(TimingBreakdown.toMillis(timing.getTotalTime()));
+        totalDuration.getStyleClass().addAll(labelStyleClass, durationLabelStyleClass);
+        grid.add(totalLabel, 0, row);
+        grid.add(totalDuration, 2, row);
+    }
+
+    /**
+     * @return The offset at which the next phase starts.
+     */
+    private double addPhase(int row, String name, long duration, double offset, double total) {
+        Label phaseLabel = new Label(name);
+        phaseLabel.getStyleClass().addAll(labelStyleClass, phaseLabelStyleClass);
+
+        Region bar = new Region();
+        bar.getStyleClass().add(barStyleClass);
+        bar.setLayoutX(offset / total * TRACK_WIDTH);
+        // Keeps very short phases visible
+        bar.setPrefSize(Math.max(duration / total * TRACK_WIDTH, 1), 14);
+
+        Pane track = new Pane(bar);
+        track.setPrefSize(TRACK_WIDTH, 14);
+        track.setMinWidth(TRACK_WIDTH);
+
+        Label durationLabel = new Label(TimingBreakdown.toMillis(duration));
+        durationLabel.getStyleClass().addAll(labelStyleClass, durationLabelStyleClass);
+
+        grid.addRow(row, phaseLabel, track, durationLabel);
+
+        return offset + duration;
+    }
+
+    TimingBreakdown getTiming() {
+        return timing;
+    }
+}
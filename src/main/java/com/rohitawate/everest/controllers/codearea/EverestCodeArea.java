@@ -17,46 +17,299 @@
 package com.rohitawate.everest.controllers.codearea;
 
 import com.rohitawate.everest.controllers.codearea.highlighters.Highlighter;
+import com.rohitawate.everest.controllers.codearea.highlighters.IncrementalHighlighter;
 import com.rohitawate.everest.format.Formatter;
+import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.settings.Settings;
+import javafx.beans.InvalidationListener;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.ReadOnlyStyledDocument;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
 
 import java.io.IOException;
-import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * A CodeArea which highlights its text with the given Highlighter.
+ * <p>
+ * Highlighting is computed on a background thread, over an immutable snapshot of the document.
+ * Every change bumps the version of the document and cancels the highlighting still in progress.
+ * Highlighting is only applied if no change was made since its snapshot was taken.
+ * <p>
+ * IncrementalHighlighters only re-highlight the paragraphs not highlighted since they last changed
+ * (and those following them whose starting state changed as a result).
+ * Other Highlighters re-highlight the whole text.
+ * <p>
+ * Documents longer than Settings.viewportHighlightingThreshold characters are highlighted in viewport mode,
+ * if the Highlighter is incremental: only the visible paragraphs and a margin around them are highlighted,
+ * and more as they are scrolled into view. Paragraphs keep their styles once highlighted,
+ * so scrolling back to them costs nothing. A region is highlighted starting from the state recorded
+ * for its first paragraph, if any, and from the initial state otherwise, since the paragraphs before it
+ * may never have been highlighted.
+ * <p>
+ * Text may also come with its highlighting precomputed, as when it was produced by a parser.
+ * Such highlighting takes the place of the IncrementalHighlighter, region by region, until the text is changed.
+ */
 public class EverestCodeArea extends CodeArea {
+    private static final int UNKNOWN_STATE = -1;
+
+    // Number of paragraphs highlighted above and below the visible ones in viewport mode
+    private static final int VIEWPORT_MARGIN = 100;
+
+    // Number of paragraphs highlighted between checks for cancellation
+    private static final int CANCELLATION_CHECK_INTERVAL = 256;
+
+    private static final ExecutorService highlightingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Everest highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private Highlighter highlighter;
 
+    // The state of the IncrementalHighlighter at the start of each paragraph
+    private final ArrayList<Integer> paragraphStates = new ArrayList<>();
+
+    // Whether each paragraph has been highlighted since it last changed
+    private final ArrayList<Boolean> highlightedParagraphs = new ArrayList<>();
+
+    // Highlighting of the whole text, supplied along with it, which is cleared once the text changes
+    private StyleSpans<Collection<String>> precomputedHighlighting;
+
+    private long version;
+    private Task<Highlighting> highlightingTask;
+
     public EverestCodeArea() {
         this.getStylesheets().add(getClass().getResource("/css/syntax/Moondust.css").toString());
         this.getStyleClass().add("everest-code-area");
         this.setWrapText(Settings.editorWrapText);
         this.setPadding(new Insets(5));
 
-        this.multiPlainChanges()
-                .successionEnds(Duration.ofMillis(1))
-                .subscribe(ignore -> highlight());
+        this.plainTextChanges()
+                .subscribe(this::onTextChange);
+
+        // Changes as the area is scrolled or resized
+        this.getVisibleParagraphs().addListener((InvalidationListener) observable -> {
+            if (isInViewportMode())
+                scheduleHighlighting();
+        });
+    }
+
+    private void onTextChange(PlainTextChange change) {
+        version++;
+        precomputedHighlighting = null;
+
+        if (highlighter instanceof IncrementalHighlighter && !markChanged(change))
+            markAllChanged();
+
+        scheduleHighlighting();
+    }
+
+    /**
+     * Updates the paragraph states for the change and marks the paragraphs it touched as not highlighted.
+     *
+     * @return false if the paragraph states are out of sync with the text.
+     */
+    private boolean markChanged(PlainTextChange change) {
+        // The text before the change is unchanged, and so are the indices of the paragraphs in it.
+        int firstParagraph = offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        int removedParagraphs = countLineBreaks(change.getRemoved());
+        int insertedParagraphs = countLineBreaks(change.getInserted());
+
+        if (firstParagraph + 1 + removedParagraphs > paragraphStates.size())
+            return false;
+
+        paragraphStates.subList(firstParagraph + 1, firstParagraph + 1 + removedParagraphs).clear();
+        paragraphStates.addAll(firstParagraph + 1, Collections.nCopies(insertedParagraphs, UNKNOWN_STATE));
+        highlightedParagraphs.subList(firstParagraph + 1, firstParagraph + 1 + removedParagraphs).clear();
+        highlightedParagraphs.addAll(firstParagraph + 1, Collections.nCopies(insertedParagraphs, false));
+        highlightedParagraphs.set(firstParagraph, false);
+
+        return paragraphStates.size() == getParagraphs().size();
     }
 
-    private void highlight() {
-        this.setStyleSpans(0, highlighter.computeHighlighting(getText()));
+    private void markAllChanged() {
+        int paragraphCount = getParagraphs().size();
+
+        paragraphStates.clear();
+        paragraphStates.addAll(Collections.nCopies(paragraphCount, UNKNOWN_STATE));
+        highlightedParagraphs.clear();
+        highlightedParagraphs.addAll(Collections.nCopies(paragraphCount, false));
+    }
+
+    private boolean isInViewportMode() {
+        return highlighter instanceof IncrementalHighlighter && getLength() > Settings.viewportHighlightingThreshold;
+    }
+
+    private void scheduleHighlighting() {
+        if (highlighter == null)
+            return;
+
+        long taskVersion = version;
+        ReadOnlyStyledDocument<?, ?, ?> snapshot = getContent().snapshot();
+        Task<Highlighting> task;
+
+        if (highlighter instanceof IncrementalHighlighter) {
+            int paragraphCount = paragraphStates.size();
+
+            // Visible paragraphs may be reported before the change which caused them is.
+            if (paragraphCount != getParagraphs().size())
+                return;
+
+            int regionStart = 0, regionEnd = paragraphCount - 1;
+            if (isInViewportMode() && !getVisibleParagraphs().isEmpty()) {
+                regionStart = Math.max(firstVisibleParToAllParIndex() - VIEWPORT_MARGIN, 0);
+                regionEnd = Math.min(lastVisibleParToAllParIndex() + VIEWPORT_MARGIN, paragraphCount - 1);
+            } else if (isInViewportMode()) {
+                regionEnd = Math.min(2 * VIEWPORT_MARGIN, paragraphCount - 1);
+            }
+
+            int firstChanged = regionStart;
+            while (firstChanged <= regionEnd && highlightedParagraphs.get(firstChanged))
+                firstChanged++;
+
+            // Everything in the region is highlighted already.
+            if (firstChanged > regionEnd)
+                return;
+
+            int lastChanged = regionEnd;
+            while (highlightedParagraphs.get(lastChanged))
+                lastChanged--;
+
+            if (precomputedHighlighting != null) {
+                applyPrecomputedHighlighting(firstChanged, lastChanged);
+                return;
+            }
+
+            // The states up to the paragraph after the region, which the highlighting is compared against
+            List<Integer> previousStates = new ArrayList<>(
+                    paragraphStates.subList(firstChanged, Math.min(regionEnd + 2, paragraphCount)));
+
+            task = new ParagraphHighlightingTask((IncrementalHighlighter) highlighter, snapshot, previousStates,
+                    firstChanged, lastChanged, regionEnd);
+        } else {
+            Highlighter documentHighlighter = highlighter;
+            task = new Task<Highlighting>() {
+                @Override
+                protected Highlighting call() {
+                    return new Highlighting(0, documentHighlighter.computeHighlighting(snapshot.getText()), null, UNKNOWN_STATE);
+                }
+            };
+        }
+
+        if (highlightingTask != null)
+            highlightingTask.cancel();
+
+        task.setOnSucceeded(e -> applyHighlighting(task.getValue(), taskVersion));
+        task.setOnFailed(e -> LoggingService.logWarning("Failed to highlight text.",
+                (Exception) task.getException(), LocalDateTime.now()));
+
+        highlightingTask = task;
+        highlightingExecutor.execute(task);
+    }
+
+    private void applyHighlighting(Highlighting highlighting, long taskVersion) {
+        // The text has changed since the snapshot was taken. The highlighting for the newer text is on its way.
+        if (highlighting == null || taskVersion != version)
+            return;
+
+        this.setStyleSpans(highlighting.firstParagraph, 0, highlighting.spans);
+
+        if (highlighting.paragraphStates == null)
+            return;
+
+        int paragraph = highlighting.firstParagraph;
+        for (int state : highlighting.paragraphStates) {
+            paragraphStates.set(paragraph, state);
+            highlightedParagraphs.set(paragraph, true);
+            paragraph++;
+        }
+
+        // The paragraph after the region now starts in a different state, and has to be highlighted again.
+        if (highlighting.stateAfterRegion != UNKNOWN_STATE) {
+            paragraphStates.set(paragraph, highlighting.stateAfterRegion);
+            highlightedParagraphs.set(paragraph, false);
+        }
+    }
+
+    private void applyPrecomputedHighlighting(int firstParagraph, int lastParagraph) {
+        int start = getAbsolutePosition(firstParagraph, 0);
+        int end = getAbsolutePosition(lastParagraph, getParagraphLength(lastParagraph));
+        this.setStyleSpans(start, precomputedHighlighting.subView(start, end));
+
+        for (int paragraph = firstParagraph; paragraph <= lastParagraph; paragraph++) {
+            paragraphStates.set(paragraph, IncrementalHighlighter.INITIAL_STATE);
+            highlightedParagraphs.set(paragraph, true);
+        }
+    }
+
+    private static int countLineBreaks(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n')
+                count++;
+        }
+
+        return count;
     }
 
     public void setHighlighter(Highlighter highlighter) {
+        // Highlighting still on its way from the previous Highlighter is discarded.
+        version++;
         this.highlighter = highlighter;
+        precomputedHighlighting = null;
 
         // Re-computes the highlighting using the new Highlighter
-        this.highlight();
+        markAllChanged();
+
+        scheduleHighlighting();
     }
 
     /**
      * Sets the text and then computes the highlighting.
      */
     public void setText(String text, Highlighter highlighter) {
-        clear();
-        appendText(text);
-        setHighlighter(highlighter);
+        if (text.equals(getText())) {
+            setHighlighter(highlighter);
+            return;
+        }
+
+        // The new text is highlighted as it replaces the old one.
+        version++;
+        this.highlighter = highlighter;
+        paragraphStates.clear();
+        highlightedParagraphs.clear();
+        replaceText(text);
+    }
+
+    /**
+     * Sets the text along with its highlighting, which is applied as it is instead of being computed.
+     * The highlighting is dropped, and the Highlighter takes over, once the text is changed.
+     *
+     * @param highlighting Spans covering the whole text, in which every paragraph starts
+     *                     in the initial state of the Highlighter.
+     */
+    public void setText(String text, IncrementalHighlighter highlighter, StyleSpans<Collection<String>> highlighting) {
+        // Nothing is highlighted while the text is replaced.
+        version++;
+        this.highlighter = null;
+        replaceText(text);
+
+        this.highlighter = highlighter;
+        precomputedHighlighting = highlighting;
+        markAllChanged();
+        scheduleHighlighting();
     }
 
     /**
@@ -65,20 +318,96 @@ public class EverestCodeArea extends CodeArea {
      *
      */
     public void setText(String text, Formatter formatter, Highlighter highlighter) {
-        clear();
         String formattedText = text;
 
         if (formatter != null) {
             try {
                 formattedText = formatter.format(text);
             } catch (IOException e) {
-                clear();
-                appendText(text);
+                replaceText(text);
                 return;
             }
         }
 
-        appendText(formattedText);
-        setHighlighter(highlighter);
+        setText(formattedText, highlighter);
+    }
+
+    private static class Highlighting {
+        private final int firstParagraph;
+        private final StyleSpans<Collection<String>> spans;
+        // The states at the start of the paragraphs highlighted, null if the Highlighter is not incremental
+        private final List<Integer> paragraphStates;
+        // The new state at the start of the paragraph after the region, if it changed
+        private final int stateAfterRegion;
+
+        private Highlighting(int firstParagraph, StyleSpans<Collection<String>> spans,
+                             List<Integer> paragraphStates, int stateAfterRegion) {
+            this.firstParagraph = firstParagraph;
+            this.spans = spans;
+            this.paragraphStates = paragraphStates;
+            this.stateAfterRegion = stateAfterRegion;
+        }
+    }
+
+    /**
+     * Highlights the paragraphs from firstParagraph to lastChangedParagraph, and then carries on
+     * with the following ones until one starts in the same state as it did before, or the region ends.
+     */
+    private static class ParagraphHighlightingTask extends Task<Highlighting> {
+        private final IncrementalHighlighter highlighter;
+        private final ReadOnlyStyledDocument<?, ?, ?> snapshot;
+        // Starting from firstParagraph
+        private final List<Integer> previousStates;
+        private final int firstParagraph;
+        private final int lastChangedParagraph;
+        private final int regionEnd;
+
+        private ParagraphHighlightingTask(IncrementalHighlighter highlighter, ReadOnlyStyledDocument<?, ?, ?> snapshot,
+                                          List<Integer> previousStates, int firstParagraph,
+                                          int lastChangedParagraph, int regionEnd) {
+            this.highlighter = highlighter;
+            this.snapshot = snapshot;
+            this.previousStates = previousStates;
+            this.firstParagraph = firstParagraph;
+            this.lastChangedParagraph = lastChangedParagraph;
+            this.regionEnd = regionEnd;
+        }
+
+        @Override
+        protected Highlighting call() {
+            StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+            List<Integer> states = new ArrayList<>();
+            int paragraphCount = snapshot.getParagraphs().size();
+            int stateAfterRegion = UNKNOWN_STATE;
+
+            int state = previousStates.get(0);
+            if (firstParagraph == 0 || state == UNKNOWN_STATE)
+                state = IncrementalHighlighter.INITIAL_STATE;
+            states.add(state);
+
+            int paragraph = firstParagraph;
+            while (true) {
+                if ((paragraph - firstParagraph) % CANCELLATION_CHECK_INTERVAL == 0 && isCancelled())
+                    return null;
+
+                String text = snapshot.getParagraphs().get(paragraph).getText();
+                state = highlighter.highlightParagraph(text, 0, text.length(), state, spansBuilder);
+
+                int next = paragraph + 1;
+                if (next == paragraphCount || (next > lastChangedParagraph && previousStates.get(next - firstParagraph) == state))
+                    break;
+
+                if (next > regionEnd) {
+                    stateAfterRegion = state;
+                    break;
+                }
+
+                states.add(state);
+                spansBuilder.add(Collections.emptyList(), 1);
+                paragraph = next;
+            }
+
+            return new Highlighting(firstParagraph, spansBuilder.create(), states, stateAfterRegion);
+        }
     }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.controllers.codearea.highlighters;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A Highlighter which can highlight a document one paragraph at a time.
+ * <p>
+ * The highlighter carries an int of state from the end of one paragraph into the next one,
+ * for constructs which span lines. EverestCodeArea remembers the state at the start of every paragraph,
+ * so that after an edit it re-highlights only the paragraphs touched by it, and those following them
+ * as long as their starting state changes.
+ */
+public interface IncrementalHighlighter extends Highlighter {
+    int INITIAL_STATE = 0;
+
+    /**
+     * Adds the spans for text[start, end), which holds a single paragraph without its line break.
+     *
+     * @param state The state at the end of the previous paragraph, or INITIAL_STATE for the first one.
+     * @return The state at the end of this paragraph.
+     */
+    int highlightParagraph(CharSequence text, int start, int end, int state,
+                           StyleSpansBuilder<Collection<String>> spansBuilder);
+
+    @Override
+    default StyleSpans<Collection<String>> computeHighlighting(String text) {
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        int state = INITIAL_STATE;
+        int start = 0;
+
+        while (true) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+
+            state = highlightParagraph(text, start, end, state, spansBuilder);
+
+            if (end == text.length())
+                break;
+
+            spansBuilder.add(Collections.emptyList(), 1);
+            start = end + 1;
+        }
+
+        return spansBuilder.create();
+    }
+}
@@ -16,54 +16,193 @@
 
 package com.rohitawate.everest.controllers.codearea.highlighters;
 
+import com.fasterxml.jackson.core.JsonToken;
+import com.rohitawate.everest.format.JSONDocument;
 import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-public class JSONHighlighter implements Highlighter {
-
-    private static final String JSON_CURLY = "(?<JSONCURLY>\\{|\\})";
-    private static final String JSON_PROPERTY = "(?<JSONPROPERTY>\\\".*\\\")\\s*:\\s*";
-    private static final String JSON_VALUE = "(?<JSONVALUE>\\\".*\\\")";
-    private static final String JSON_ARRAY = "\\[(?<JSONARRAY>.*)\\]";
-    private static final String JSON_NUMBER = "(?<JSONNUMBER>\\d*.?\\d*)";
-    private static final String JSON_BOOL = "(?<JSONBOOL>true|false)";
-
-    private static final Pattern FINAL_REGEX = Pattern.compile(
-            JSON_CURLY + "|"
-                    + JSON_PROPERTY + "|"
-                    + JSON_VALUE + "|"
-                    + JSON_ARRAY + "|"
-                    + JSON_BOOL + "|"
-                    + JSON_NUMBER
-    );
+
+/**
+ * Highlights JSON with a hand-written lexer which makes a single pass over the text.
+ * <p>
+ * A string is styled as a property if the next character after it on the same line, other than whitespace, is a colon.
+ * Strings are not allowed to span lines in JSON, but one which does is styled as a value till it ends.
+ */
+public class JSONHighlighter implements IncrementalHighlighter {
+    private static final int IN_STRING = 1;
+
+    private static final Collection<String> NONE = Collections.emptyList();
+    private static final Collection<String> CURLY = Collections.singleton("json_curly");
+    private static final Collection<String> ARRAY = Collections.singleton("json_array");
+    private static final Collection<String> PROPERTY = Collections.singleton("json_property");
+    private static final Collection<String> VALUE = Collections.singleton("json_value");
+    private static final Collection<String> BOOL = Collections.singleton("json_bool");
+    private static final Collection<String> NUMBER = Collections.singleton("json_number");
 
     @Override
-    public StyleSpans<Collection<String>> computeHighlighting(String text) {
-        Matcher matcher = FINAL_REGEX.matcher(text);
-        int lastKwEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder
-                = new StyleSpansBuilder<>();
-        while (matcher.find()) {
-            String styleClass
-                    = matcher.group("JSONPROPERTY") != null ? "json_property"
-                    : matcher.group("JSONVALUE") != null ? "json_value"
-                    : matcher.group("JSONARRAY") != null ? "json_array"
-                    : matcher.group("JSONCURLY") != null ? "json_curly"
-                    : matcher.group("JSONBOOL") != null ? "json_bool"
-                    : matcher.group("JSONNUMBER") != null ? "json_number"
-                    : null;
-            /* never happens */
-            assert styleClass != null;
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
-            lastKwEnd = matcher.end();
+    public int highlightParagraph(CharSequence text, int start, int end, int state,
+                                  StyleSpansBuilder<Collection<String>> spansBuilder) {
+        int position = start;
+        // Start of the text which has not been styled yet
+        int unstyled = start;
+
+        if (state == IN_STRING) {
+            position = findStringEnd(text, position, end);
+            if (position < 0) {
+                spansBuilder.add(VALUE, end - start);
+                return IN_STRING;
+            }
+
+            spansBuilder.add(VALUE, position - start);
+            unstyled = position;
         }
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
+
+        while (position < end) {
+            char c = text.charAt(position);
+            int tokenStart = position;
+            Collection<String> style;
+
+            if (c == '"') {
+                position = findStringEnd(text, position + 1, end);
+                if (position < 0) {
+                    spansBuilder.add(NONE, tokenStart - unstyled);
+                    spansBuilder.add(VALUE, end - tokenStart);
+                    return IN_STRING;
+                }
+
+                style = isFollowedByColon(text, position, end) ? PROPERTY : VALUE;
+            } else if (c == '{' || c == '}') {
+                position++;
+                style = CURLY;
+            } else if (c == '[' || c == ']') {
+                position++;
+                style = ARRAY;
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                position = skipNumber(text, position + 1, end);
+                style = NUMBER;
+            } else if (Character.isLetter(c)) {
+                position = skipWord(text, position + 1, end);
+                style = isLiteral(text, tokenStart, position) ? BOOL : null;
+            } else {
+                position++;
+                style = null;
+            }
+
+            if (style != null) {
+                spansBuilder.add(NONE, tokenStart - unstyled);
+                spansBuilder.add(style, position - tokenStart);
+                unstyled = position;
+            }
+        }
+
+        spansBuilder.add(NONE, end - unstyled);
+        return INITIAL_STATE;
+    }
+
+    /**
+     * Highlights the text of a JSONDocument from the tokens recorded while it was parsed, without lexing it again.
+     * Since strings never span lines in it, every paragraph of the text starts in the initial state.
+     */
+    public StyleSpans<Collection<String>> computeHighlighting(JSONDocument document) {
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        // Start of the text which has not been styled yet
+        int unstyled = 0;
+
+        for (int i = 0; i < document.getTokenCount(); i++) {
+            int tokenStart = document.getTokenStart(i);
+            int tokenEnd = document.getTokenEnd(i);
+
+            spansBuilder.add(NONE, tokenStart - unstyled);
+            spansBuilder.add(getStyle(document.getTokenType(i)), tokenEnd - tokenStart);
+            unstyled = tokenEnd;
+        }
+
+        spansBuilder.add(NONE, document.getLength() - unstyled);
         return spansBuilder.create();
     }
+
+    private static Collection<String> getStyle(JsonToken token) {
+        switch (token) {
+            case START_OBJECT:
+            case END_OBJECT:
+                return CURLY;
+            case START_ARRAY:
+            case END_ARRAY:
+                return ARRAY;
+            case FIELD_NAME:
+                return PROPERTY;
+            case VALUE_STRING:
+                return VALUE;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return NUMBER;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+            case VALUE_NULL:
+                return BOOL;
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * @param position The position right after the opening quote.
+     * @return The position right after the closing quote, or -1 if the string does not end in this paragraph.
+     */
+    private static int findStringEnd(CharSequence text, int position, int end) {
+        while (position < end) {
+            char c = text.charAt(position++);
+            if (c == '\\')
+                position++;
+            else if (c == '"')
+                return position;
+        }
+
+        return -1;
+    }
+
+    private static boolean isFollowedByColon(CharSequence text, int position, int end) {
+        while (position < end && Character.isWhitespace(text.charAt(position)))
+            position++;
+
+        return position < end && text.charAt(position) == ':';
+    }
+
+    private static int skipNumber(CharSequence text, int position, int end) {
+        while (position < end) {
+            char c = text.charAt(position);
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-')
+                position++;
+            else
+                break;
+        }
+
+        return position;
+    }
+
+    private static int skipWord(CharSequence text, int position, int end) {
+        while (position < end && Character.isLetterOrDigit(text.charAt(position)))
+            position++;
+
+        return position;
+    }
+
+    private static boolean isLiteral(CharSequence text, int start, int end) {
+        return regionEquals(text, start, end, "true") || regionEquals(text, start, end, "false")
+                || regionEquals(text, start, end, "null");
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, int end, String word) {
+        if (end - start != word.length())
+            return false;
+
+        for (int i = 0; i < word.length(); i++) {
+            if (text.charAt(start + i) != word.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
 }
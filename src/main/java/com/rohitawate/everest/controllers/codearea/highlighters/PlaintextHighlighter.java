@@ -22,13 +22,22 @@ import org.fxmisc.richtext.model.StyleSpansBuilder;
 import java.util.Collection;
 import java.util.Collections;
 
-public class PlaintextHighlighter implements Highlighter {
+public class PlaintextHighlighter implements IncrementalHighlighter {
+    private static final Collection<String> PLAIN_TEXT = Collections.singleton("plain-text");
+
     @Override
     public StyleSpans<Collection<String>> computeHighlighting(String text) {
         StyleSpansBuilder<Collection<String>> spansBuilder
                 = new StyleSpansBuilder<>();
 
-        spansBuilder.add(Collections.singleton("plain-text"), text.length());
+        spansBuilder.add(PLAIN_TEXT, text.length());
         return spansBuilder.create();
     }
+
+    @Override
+    public int highlightParagraph(CharSequence text, int start, int end, int state,
+                                  StyleSpansBuilder<Collection<String>> spansBuilder) {
+        spansBuilder.add(PLAIN_TEXT, end - start);
+        return INITIAL_STATE;
+    }
 }
@@ -1,29 +1,3 @@
-/*
- * This highlighter is heavily based on the XMLEditorDemo provided by the contributors of RichTextFX (https://github.com/FXMisc/RichTextFX).
- * https://github.com/FXMisc/RichTextFX/blob/master/richtextfx-demos/src/main/java/org/fxmisc/richtext/demo/XMLEditorDemo.java
- * RichTextFX is dual-licensed under BSD 2-Clause License and GPLv2 with the Classpath Exception.
- *
- * Copyright (c) 2013-2017, Tomas Mikula and contributors
- *     All rights reserved.
- *
- *     Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
- *     following conditions are met:
- *
- *     1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
- *     following disclaimer.
- *
- *     2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
- *     following disclaimer in the documentation and/or other materials provided with the distribution.
- *
- *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED
- *     WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
- *     PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY
- *     DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
- *     PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
- *     CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
- *     OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- */
-
 /*
  * Copyright 2018 Rohit Awate.
  *
@@ -42,70 +16,275 @@
 
 package com.rohitawate.everest.controllers.codearea.highlighters;
 
-import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-public class XMLHighlighter implements Highlighter {
-
-    private static final Pattern XML_TAG = Pattern.compile("(?<ELEMENT>(</?\\h*)(\\w+)([^<>]*)(\\h*/?>))"
-            + "|(?<COMMENT><!--[^<>]+-->)");
+/**
+ * Highlights XML and HTML with a tokenizer which makes a single pass over the text, without copying any of it.
+ * <p>
+ * Besides elements and their attributes, it recognizes comments, CDATA sections, processing instructions,
+ * declarations such as DOCTYPE and entity references. Comments, CDATA sections, processing instructions,
+ * declarations, tags and quoted attribute values may all span lines.
+ */
+public class XMLHighlighter implements IncrementalHighlighter {
+    private static final int TEXT = INITIAL_STATE;
+    private static final int COMMENT = 1;
+    private static final int CDATA = 2;
+    private static final int PROCESSING_INSTRUCTION = 3;
+    private static final int DECLARATION = 4;
+    private static final int TAG = 5;
+    private static final int DOUBLE_QUOTED_VALUE = 6;
+    private static final int SINGLE_QUOTED_VALUE = 7;
 
-    private static final Pattern ATTRIBUTES = Pattern.compile("(\\w+\\h*)(=)(\\h*\"[^\"]+\")");
+    // Longest entity reference looked for, as in '&thetasym;'
+    private static final int MAX_ENTITY_LENGTH = 32;
 
-    private static final int GROUP_OPEN_BRACKET = 2;
-    private static final int GROUP_ELEMENT_NAME = 3;
-    private static final int GROUP_ATTRIBUTES_SECTION = 4;
-    private static final int GROUP_CLOSE_BRACKET = 5;
-    private static final int GROUP_ATTRIBUTE_NAME = 1;
-    private static final int GROUP_EQUAL_SYMBOL = 2;
-    private static final int GROUP_ATTRIBUTE_VALUE = 3;
+    private static final Collection<String> NONE = Collections.emptyList();
+    private static final Collection<String> BRACKET = Collections.singleton("xml_bracket");
+    private static final Collection<String> TAG_NAME = Collections.singleton("xml_tag");
+    private static final Collection<String> ATTRIBUTE = Collections.singleton("xml_attribute");
+    private static final Collection<String> ATTRIBUTE_VALUE = Collections.singleton("xml_attribute_value");
+    private static final Collection<String> COMMENT_TEXT = Collections.singleton("xml_comment");
+    private static final Collection<String> CDATA_TEXT = Collections.singleton("xml_cdata");
+    private static final Collection<String> DECLARATION_TEXT = Collections.singleton("xml_declaration");
+    private static final Collection<String> ENTITY = Collections.singleton("xml_entity");
 
     @Override
-    public StyleSpans<Collection<String>> computeHighlighting(String text) {
-        Matcher matcher = XML_TAG.matcher(text);
-        int lastKwEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-        while (matcher.find()) {
-
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-            if (matcher.group("COMMENT") != null) {
-                spansBuilder.add(Collections.singleton("xml_comment"), matcher.end() - matcher.start());
-            } else {
-                if (matcher.group("ELEMENT") != null) {
-                    String attributesText = matcher.group(GROUP_ATTRIBUTES_SECTION);
-
-                    spansBuilder.add(Collections.singleton("xml_bracket"), matcher.end(GROUP_OPEN_BRACKET) - matcher.start(GROUP_OPEN_BRACKET));
-                    spansBuilder.add(Collections.singleton("xml_tag"), matcher.end(GROUP_ELEMENT_NAME) - matcher.end(GROUP_OPEN_BRACKET));
-
-                    if (!attributesText.isEmpty()) {
-
-                        lastKwEnd = 0;
-
-                        Matcher attributesMatcher = ATTRIBUTES.matcher(attributesText);
-                        while (attributesMatcher.find()) {
-                            spansBuilder.add(Collections.emptyList(), attributesMatcher.start() - lastKwEnd);
-                            spansBuilder.add(Collections.singleton("xml_attribute"), attributesMatcher.end(GROUP_ATTRIBUTE_NAME) - attributesMatcher.start(GROUP_ATTRIBUTE_NAME));
-                            spansBuilder.add(Collections.singleton("xml_bracket"), attributesMatcher.end(GROUP_EQUAL_SYMBOL) - attributesMatcher.end(GROUP_ATTRIBUTE_NAME));
-                            spansBuilder.add(Collections.singleton("xml_attribute_value"), attributesMatcher.end(GROUP_ATTRIBUTE_VALUE) - attributesMatcher.end(GROUP_EQUAL_SYMBOL));
-                            lastKwEnd = attributesMatcher.end();
-                        }
-                        if (attributesText.length() > lastKwEnd)
-                            spansBuilder.add(Collections.emptyList(), attributesText.length() - lastKwEnd);
-                    }
-
-                    lastKwEnd = matcher.end(GROUP_ATTRIBUTES_SECTION);
-                    spansBuilder.add(Collections.singleton("xml_bracket"), matcher.end(GROUP_CLOSE_BRACKET) - lastKwEnd);
+    public int highlightParagraph(CharSequence text, int start, int end, int state,
+                                  StyleSpansBuilder<Collection<String>> spansBuilder) {
+        Tokenizer tokenizer = new Tokenizer(text, start, end, spansBuilder);
+
+        while (tokenizer.position < end) {
+            switch (state) {
+                case COMMENT:
+                    state = tokenizer.until("-->", COMMENT_TEXT) ? TEXT : COMMENT;
+                    break;
+                case CDATA:
+                    state = tokenizer.until("]]>", CDATA_TEXT) ? TEXT : CDATA;
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    state = tokenizer.until("?>", DECLARATION_TEXT) ? TEXT : PROCESSING_INSTRUCTION;
+                    break;
+                case DECLARATION:
+                    state = tokenizer.until(">", DECLARATION_TEXT) ? TEXT : DECLARATION;
+                    break;
+                case DOUBLE_QUOTED_VALUE:
+                    state = tokenizer.until("\"", ATTRIBUTE_VALUE) ? TAG : DOUBLE_QUOTED_VALUE;
+                    break;
+                case SINGLE_QUOTED_VALUE:
+                    state = tokenizer.until("'", ATTRIBUTE_VALUE) ? TAG : SINGLE_QUOTED_VALUE;
+                    break;
+                case TAG:
+                    state = tokenizer.insideTag();
+                    break;
+                default:
+                    state = tokenizer.text();
+            }
+        }
+
+        tokenizer.finish();
+        return state;
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-' || c == '.';
+    }
+
+    /**
+     * Walks over a single paragraph, adding a span for every token as it goes.
+     */
+    private static class Tokenizer {
+        private final CharSequence text;
+        private final int end;
+        private final StyleSpansBuilder<Collection<String>> spansBuilder;
+
+        private int position;
+        // Start of the text which has not been styled yet
+        private int unstyled;
+
+        private Tokenizer(CharSequence text, int start, int end, StyleSpansBuilder<Collection<String>> spansBuilder) {
+            this.text = text;
+            this.end = end;
+            this.spansBuilder = spansBuilder;
+            this.position = start;
+            this.unstyled = start;
+        }
+
+        /**
+         * Styles the text up to and including the delimiter, or up to the end of the paragraph if it is not found.
+         *
+         * @return true if the delimiter was found.
+         */
+        private boolean until(String delimiter, Collection<String> style) {
+            int delimiterStart = indexOf(delimiter, position);
+            int tokenEnd = delimiterStart < 0 ? end : delimiterStart + delimiter.length();
+
+            style(position, tokenEnd, style);
+            return delimiterStart >= 0;
+        }
+
+        private int text() {
+            // Skips to the next character of interest
+            while (position < end) {
+                char c = text.charAt(position);
+                if (c == '<' || c == '&')
+                    break;
+                position++;
+            }
+
+            if (position == end)
+                return TEXT;
+
+            if (text.charAt(position) == '&') {
+                entity();
+                return TEXT;
+            }
+
+            if (startsWith("<!--")) {
+                style(position, position + 4, COMMENT_TEXT);
+                return COMMENT;
+            }
+
+            if (startsWith("<![CDATA[")) {
+                style(position, position + 9, CDATA_TEXT);
+                return CDATA;
+            }
+
+            if (startsWith("<?")) {
+                style(position, position + 2, DECLARATION_TEXT);
+                return PROCESSING_INSTRUCTION;
+            }
+
+            if (startsWith("<!")) {
+                style(position, position + 2, DECLARATION_TEXT);
+                return DECLARATION;
+            }
+
+            int nameStart = startsWith("</") ? position + 2 : position + 1;
+            if (nameStart >= end || !isNameStart(text.charAt(nameStart))) {
+                // A stray '<'
+                position++;
+                return TEXT;
+            }
+
+            style(position, nameStart, BRACKET);
+            style(position, skipName(position), TAG_NAME);
+            return TAG;
+        }
+
+        private int insideTag() {
+            while (position < end && Character.isWhitespace(text.charAt(position)))
+                position++;
+
+            if (position == end)
+                return TAG;
+
+            char c = text.charAt(position);
+
+            if (c == '>') {
+                style(position, position + 1, BRACKET);
+                return TEXT;
+            }
+
+            if (startsWith("/>")) {
+                style(position, position + 2, BRACKET);
+                return TEXT;
+            }
+
+            if (c == '=') {
+                style(position, position + 1, BRACKET);
+                return TAG;
+            }
+
+            if (c == '"' || c == '\'') {
+                int quoteEnd = indexOf(c == '"' ? "\"" : "'", position + 1);
+                if (quoteEnd < 0) {
+                    style(position, end, ATTRIBUTE_VALUE);
+                    return c == '"' ? DOUBLE_QUOTED_VALUE : SINGLE_QUOTED_VALUE;
                 }
+
+                style(position, quoteEnd + 1, ATTRIBUTE_VALUE);
+                return TAG;
+            }
+
+            if (isNameChar(c)) {
+                style(position, skipName(position), ATTRIBUTE);
+                return TAG;
             }
-            lastKwEnd = matcher.end();
+
+            position++;
+            return TAG;
         }
 
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
-        return spansBuilder.create();
+        /**
+         * Styles references such as '&amp;amp;', '&amp;#160;' and '&amp;#xA0;'. A lone '&amp;' is left as it is.
+         */
+        private void entity() {
+            int limit = Math.min(end, position + MAX_ENTITY_LENGTH);
+            int nameStart = position + 1;
+
+            if (nameStart < limit && text.charAt(nameStart) == '#')
+                nameStart++;
+
+            int referenceEnd = nameStart;
+            while (referenceEnd < limit && isNameChar(text.charAt(referenceEnd)))
+                referenceEnd++;
+
+            if (referenceEnd < limit && referenceEnd > nameStart && text.charAt(referenceEnd) == ';')
+                style(position, referenceEnd + 1, ENTITY);
+            else
+                position++;
+        }
+
+        private int skipName(int from) {
+            int nameEnd = from;
+            while (nameEnd < end && isNameChar(text.charAt(nameEnd)))
+                nameEnd++;
+
+            return nameEnd;
+        }
+
+        private void style(int from, int to, Collection<String> style) {
+            spansBuilder.add(NONE, from - unstyled);
+            spansBuilder.add(style, to - from);
+            position = to;
+            unstyled = to;
+        }
+
+        private void finish() {
+            spansBuilder.add(NONE, end - unstyled);
+        }
+
+        private boolean startsWith(String prefix) {
+            return regionMatches(position, prefix);
+        }
+
+        private int indexOf(String delimiter, int from) {
+            char first = delimiter.charAt(0);
+            for (int i = from; i <= end - delimiter.length(); i++) {
+                if (text.charAt(i) == first && regionMatches(i, delimiter))
+                    return i;
+            }
+
+            return -1;
+        }
+
+        private boolean regionMatches(int from, String string) {
+            if (from + string.length() > end)
+                return false;
+
+            for (int i = 0; i < string.length(); i++) {
+                if (text.charAt(from + i) != string.charAt(i))
+                    return false;
+            }
+
+            return true;
+        }
     }
 }
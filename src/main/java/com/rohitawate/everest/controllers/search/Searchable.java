@@ -25,4 +25,9 @@ package com.rohitawate.everest.controllers.search;
 public interface Searchable<T> {
     int getRelativityIndex(String searchString);
     T getState();
+
+    /**
+     * Shows the given state. Called whenever the item is re-used for a different entry.
+     */
+    void setState(T state);
 }
\ No newline at end of file
@@ -16,7 +16,6 @@
 
 package com.rohitawate.everest.controllers.search;
 
-import com.google.common.util.concurrent.MoreExecutors;
 import com.jfoenix.controls.JFXButton;
 import com.rohitawate.everest.logging.LoggingService;
 import javafx.application.Platform;
@@ -24,6 +23,8 @@ import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.StackPane;
@@ -33,12 +34,40 @@ import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+/**
+ * A pane which lists entries, newest first, and lets the user search through them.
+ * <p>
+ * The entries are shown in virtualized ListViews, so only the rows that are visible
+ * have a node (and the FXML behind it) created for them. Rows are recycled as the list is scrolled.
+ * Entries are fetched page by page from loadEntries() on a background thread,
+ * the next page being fetched once the user scrolls close to the end of the ones loaded so far.
+ * <p>
+ * Searches run on the same thread. Only the results of the latest search are shown, those of the
+ * searches overtaken by further typing being discarded. Results are cached per search string
+ * until the entries change, so that deleting characters shows the earlier results immediately.
+ */
 public abstract class SearchablePaneController<T> implements Initializable {
+    private static final int PAGE_SIZE = 100;
+
+    // The next page is fetched once a row within this distance from the end is shown.
+    private static final int PREFETCH_DISTANCE = 20;
+
+    private static final int SEARCH_LIMIT = 200;
+    private static final int SEARCH_CACHE_SIZE = 64;
+
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Everest history loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @FXML
     private StackPane searchPromptLayer, searchLayer, searchFailedLayer;
     @FXML
@@ -46,9 +75,22 @@ public abstract class SearchablePaneController<T> implements Initializable {
     @FXML
     private TextField searchTextField;
     @FXML
-    private VBox searchTab, searchBox, searchPane;
-
-    private List<Searchable<T>> searchableItems;
+    private ListView<T> historyList, searchList;
+    @FXML
+    private VBox searchPane;
+
+    private boolean loadingPage;
+    private boolean allPagesLoaded;
+    // The last entry fetched by loadEntries(), after which the next page starts
+    private T lastLoaded;
+
+    private Task<List<T>> searchTask;
+    private final LinkedHashMap<String, List<T>> searchCache = new LinkedHashMap<String, List<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<T>> eldest) {
+            return size() > SEARCH_CACHE_SIZE;
+        }
+    };
 
     protected static class SearchEntry<T> {
         private final Parent fxmlItem;
@@ -71,117 +113,172 @@ public abstract class SearchablePaneController<T> implements Initializable {
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        searchableItems = new ArrayList<>();
-        searchLayer.visibleProperty().bind(searchTextField.textProperty().isNotEmpty());
-
-        searchTextField.textProperty().addListener(((observable, oldValue, newValue) -> {
-            searchBox.getChildren().remove(0, searchBox.getChildren().size());
-            searchFailedLayer.setVisible(false);
-            List<Searchable<T>> searchResults = getSearchResults(searchTextField.getText());
-
-            searchResults.sort((controller1, controller2) -> {
-                int relativity1 = controller1.getRelativityIndex(searchTextField.getText());
-                int relativity2 = controller2.getRelativityIndex(searchTextField.getText());
-                return relativity2 - relativity1;
-            });
+        historyList.setCellFactory(listView -> new EntryCell());
+        searchList.setCellFactory(listView -> new EntryCell());
 
-            if (searchResults.size() != 0) {
-                for (Searchable<T> controller : searchResults) {
-                    addSearchItem(controller.getState());
-                }
-            } else {
-                searchFailedLayer.setVisible(true);
-            }
-        }));
+        searchLayer.visibleProperty().bind(searchTextField.textProperty().isNotEmpty());
+        searchTextField.textProperty().addListener(((observable, oldValue, newValue) -> showSearchResults(newValue)));
 
         clearSearchFieldButton.setOnAction(e -> searchTextField.clear());
 
-        Platform.runLater(this::loadInitialItemsAsync);
+        Platform.runLater(this::loadNextPage);
     }
 
-    private void loadInitialItemsAsync() {
-        Task<List<T>> entryLoader = new Task<List<T>>() {
+    /**
+     * Fetches the page following the last entry fetched so far.
+     * Entries added through addHistoryItem() meanwhile are newer than it, and thus do not shift the page.
+     */
+    private void loadNextPage() {
+        if (loadingPage || allPagesLoaded)
+            return;
+
+        loadingPage = true;
+        T after = lastLoaded;
+
+        Task<List<T>> pageTask = new Task<List<T>>() {
             @Override
             protected List<T> call() {
-                return loadInitialEntries();
+                return loadEntries(after, PAGE_SIZE);
             }
         };
 
-        entryLoader.setOnSucceeded(e -> {
-            try {
-                List<T> entries = entryLoader.get();
-                if (entries.size() == 0) {
-                    searchPromptLayer.setVisible(true);
-                    return;
-                }
+        pageTask.setOnSucceeded(e -> {
+            loadingPage = false;
+            List<T> page = pageTask.getValue();
+
+            if (page == null || page.size() < PAGE_SIZE)
+                allPagesLoaded = true;
 
-                for (T state : entries)
-                    addHistoryItem(state);
-            } catch (InterruptedException | ExecutionException E) {
-                LoggingService.logSevere("Task thread interrupted while populating HistoryTab.", E,
-                        LocalDateTime.now());
+            if (page != null && !page.isEmpty()) {
+                historyList.getItems().addAll(page);
+                lastLoaded = page.get(page.size() - 1);
+                searchCache.clear();
             }
-        });
 
-        entryLoader.setOnFailed(e -> LoggingService.logWarning("Failed to load history.",
-                (Exception) entryLoader.getException(), LocalDateTime.now()));
+            searchPromptLayer.setVisible(historyList.getItems().isEmpty());
+        });
 
-        MoreExecutors.directExecutor().execute(entryLoader);
-    }
+        pageTask.setOnFailed(e -> {
+            loadingPage = false;
+            allPagesLoaded = true;
+            LoggingService.logWarning("Failed to load history.", (Exception) pageTask.getException(), LocalDateTime.now());
+        });
 
-    private void addSearchItem(T state) {
-        appendToList(state, searchBox, false);
+        loader.execute(pageTask);
     }
 
-    protected abstract List<T> loadInitialEntries();
+    /**
+     * @param lastLoaded The last entry of the previous page, or null for the first page.
+     * @return Up to 'limit' entries older than 'lastLoaded', newest first.
+     */
+    protected abstract List<T> loadEntries(T lastLoaded, int limit);
+
+    /**
+     * Creates a node for displaying entries. Nodes are re-used for different entries as the list is scrolled.
+     */
+    protected abstract SearchEntry<T> createEntry() throws IOException;
+
+    /**
+     * Searches all the entries, not just the ones loaded. Called on a background thread.
+     *
+     * @return The best matching entries, best first, or null if the source cannot be searched,
+     * in which case the loaded entries are ranked with getRelativityIndex().
+     */
+    protected abstract List<T> searchEntries(String searchString, int limit);
+
+    /**
+     * @return How closely the entry matches the search string. 0 means no match at all.
+     */
+    protected abstract int getRelativityIndex(T entry, String searchString);
 
     public void focusSearchField() {
         searchTextField.requestFocus();
     }
 
-    private Searchable<T> appendToList(T state, VBox layer, boolean appendToStart) {
+    public void addHistoryItem(T state) {
         searchPromptLayer.setVisible(false);
-        try {
-            SearchEntry<T> searchEntry = createEntryFromState(state);
+        historyList.getItems().add(0, state);
+        searchCache.clear();
+    }
 
-            if (appendToStart)
-                layer.getChildren().add(0, searchEntry.getFxmlItem());
-            else
-                layer.getChildren().add(searchEntry.getFxmlItem());
+    private void showSearchResults(String searchString) {
+        if (searchTask != null)
+            searchTask.cancel();
 
-            return searchEntry.getSearchable();
-        } catch (IOException e) {
-            LoggingService.logSevere("Could not append HistoryItem to list.", e, LocalDateTime.now());
+        if (searchString.isEmpty()) {
+            searchFailedLayer.setVisible(false);
+            searchList.getItems().clear();
+            return;
         }
 
-        return null;
-    }
+        List<T> cachedResults = searchCache.get(searchString);
+        if (cachedResults != null) {
+            displaySearchResults(cachedResults);
+            return;
+        }
 
-    protected abstract SearchEntry<T> createEntryFromState(T state) throws IOException;
+        // Used only if the source cannot be searched
+        List<T> loadedEntries = new ArrayList<>(historyList.getItems());
 
-    public void addHistoryItem(T state) {
-        Searchable<T> controller = appendToList(state, searchTab, true);
-        searchableItems.add(controller);
-    }
+        Task<List<T>> task = new Task<List<T>>() {
+            @Override
+            protected List<T> call() {
+                if (isCancelled())
+                    return null;
+
+                List<T> results = searchEntries(searchString, SEARCH_LIMIT);
+                if (results == null)
+                    results = rankEntries(loadedEntries, searchString);
+
+                return results;
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            // The user may have typed on while this search was running.
+            if (task != searchTask || task.getValue() == null)
+                return;
+
+            searchCache.put(searchString, task.getValue());
+            displaySearchResults(task.getValue());
+        });
+
+        task.setOnFailed(e -> LoggingService.logWarning("Search failed.", (Exception) task.getException(), LocalDateTime.now()));
 
-    private List<Searchable<T>> getSearchResults(String searchString) {
-        List<Searchable<T>> filteredList = new ArrayList<>();
+        searchTask = task;
+        loader.execute(task);
+    }
 
-        for (Searchable<T> controller : searchableItems) {
+    private void displaySearchResults(List<T> results) {
+        searchList.getItems().setAll(results);
+        searchFailedLayer.setVisible(results.isEmpty());
+    }
 
-            int relativityIndex = controller.getRelativityIndex(searchString);
+    private List<T> rankEntries(List<T> entries, String searchString) {
+        // Split the string into words and get total relativity index as sum of individual indices.
+        String[] words = searchString.split("\\s");
+        List<SearchResult<T>> results = new ArrayList<>();
 
-            // Split the string into words and get total relativity index as sum of
-            // individual indices.
-            String words[] = searchString.split("\\s");
+        for (T entry : entries) {
+            int relativityIndex = getRelativityIndex(entry, searchString);
             for (String word : words)
-                relativityIndex += controller.getRelativityIndex(word);
+                relativityIndex += getRelativityIndex(entry, word);
 
             if (relativityIndex != 0)
-                filteredList.add(controller);
+                results.add(new SearchResult<>(entry, relativityIndex));
         }
 
-        return filteredList;
+        // Each index is computed once per search rather than on every comparison.
+        results.sort((result1, result2) -> Integer.compare(result2.relativityIndex, result1.relativityIndex));
+
+        List<T> rankedEntries = new ArrayList<>(Math.min(results.size(), SEARCH_LIMIT));
+        for (SearchResult<T> result : results) {
+            if (rankedEntries.size() == SEARCH_LIMIT)
+                break;
+            rankedEntries.add(result.entry);
+        }
+
+        return rankedEntries;
     }
 
     public void toggleVisibilityIn(SplitPane splitPane) {
@@ -193,4 +290,46 @@ public abstract class SearchablePaneController<T> implements Initializable {
 
         searchPane.setVisible(!searchPane.isVisible());
     }
+
+    private static class SearchResult<T> {
+        private final T entry;
+        private final int relativityIndex;
+
+        private SearchResult(T entry, int relativityIndex) {
+            this.entry = entry;
+            this.relativityIndex = relativityIndex;
+        }
+    }
+
+    /**
+     * Loads the FXML of its entry once and then only swaps the state shown by it.
+     */
+    private class EntryCell extends ListCell<T> {
+        private SearchEntry<T> entry;
+
+        @Override
+        protected void updateItem(T item, boolean empty) {
+            super.updateItem(item, empty);
+
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+
+            if (entry == null) {
+                try {
+                    entry = createEntry();
+                } catch (IOException e) {
+                    LoggingService.logSevere("Could not load history item.", e, LocalDateTime.now());
+                    return;
+                }
+            }
+
+            entry.getSearchable().setState(item);
+            setGraphic(entry.getFxmlItem());
+
+            if (getListView() == historyList && getIndex() >= historyList.getItems().size() - PREFETCH_DISTANCE)
+                loadNextPage();
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.controllers.visualizers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rohitawate.everest.misc.EverestUtilities;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A TreeItem for a JsonNode, whose children are only created when it is first expanded.
+ * <p>
+ * Arrays and objects with more than CHUNK_SIZE entries are split into ranges such as "[0..999]",
+ * which are themselves grouped into larger ranges as long as there would be more than CHUNK_SIZE of them.
+ * Thus, no item ever has more than CHUNK_SIZE children, however large the node.
+ */
+class JsonTreeItem extends TreeItem<String> {
+    static final int CHUNK_SIZE = 1000;
+
+    // The node whose entries are shown, null if this item shows a value
+    private final JsonNode node;
+    // The range of entries of the node shown under this item
+    private final int from, to;
+
+    // The names of the fields, if the node is an object, shared with the ranges under this item
+    private List<String> fieldNames;
+    private boolean childrenCreated;
+
+    JsonTreeItem(String label, JsonNode node) {
+        this(label, node.isContainerNode() ? node : null, null, 0, node.isContainerNode() ? node.size() : 0);
+    }
+
+    private JsonTreeItem(String label, JsonNode node, List<String> fieldNames, int from, int to) {
+        super(label);
+        this.node = node;
+        this.fieldNames = fieldNames;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return from == to;
+    }
+
+    @Override
+    public ObservableList<TreeItem<String>> getChildren() {
+        if (!childrenCreated) {
+            childrenCreated = true;
+            super.getChildren().setAll(createChildren());
+        }
+
+        return super.getChildren();
+    }
+
+    private List<TreeItem<String>> createChildren() {
+        int size = to - from;
+        List<TreeItem<String>> children = new ArrayList<>(Math.min(size, CHUNK_SIZE));
+
+        if (size == 0)
+            return children;
+
+        if (node.isObject() && fieldNames == null) {
+            fieldNames = new ArrayList<>(node.size());
+            Iterator<String> iterator = node.fieldNames();
+            while (iterator.hasNext())
+                fieldNames.add(iterator.next());
+        }
+
+        if (size > CHUNK_SIZE) {
+            long step = CHUNK_SIZE;
+            while ((size + step - 1) / step > CHUNK_SIZE)
+                step *= CHUNK_SIZE;
+
+            for (long start = from; start < to; start += step) {
+                int end = (int) Math.min(start + step, to);
+                children.add(new JsonTreeItem("[" + start + ".." + (end - 1) + "]", node, fieldNames, (int) start, end));
+            }
+
+            return children;
+        }
+
+        for (int i = from; i < to; i++) {
+            if (node.isArray())
+                children.add(createItem(Integer.toString(i), node.get(i), true));
+            else
+                children.add(createItem(fieldNames.get(i), node.get(fieldNames.get(i)), false));
+        }
+
+        return children;
+    }
+
+    private static JsonTreeItem createItem(String name, JsonNode child, boolean isElement) {
+        if (child.isValueNode())
+            return new JsonTreeItem(name + ": " + EverestUtilities.trimString(child.toString()), child);
+
+        if (!isElement)
+            return new JsonTreeItem(name, child);
+
+        return new JsonTreeItem(name + (child.isObject() ? ": [Anonymous Object]" : ": [Anonymous Array]"), child);
+    }
+}
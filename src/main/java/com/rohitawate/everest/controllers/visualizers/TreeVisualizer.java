@@ -17,101 +17,114 @@
 package com.rohitawate.everest.controllers.visualizers;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.rohitawate.everest.format.JSONDocument;
+import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.misc.EverestUtilities;
-import javafx.scene.control.TreeItem;
+import javafx.concurrent.Task;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TreeView;
+import javafx.scene.layout.StackPane;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows a JSON body as a tree. Items are created lazily, as they are expanded.
+ * <p>
+ * The tree of a JSONDocument is built on a background thread, while a progress indicator is shown.
+ * Populating the visualizer again, or clearing it, cancels the tree still being built.
+ */
 public class TreeVisualizer extends Visualizer {
+    private static final ExecutorService treeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Everest visualizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private TreeView<String> visualizer;
-    private ArrayList<TreeItem<String>> recycledNodes;
-    private int lastNodeIndex;
+    private StackPane progressPane;
+    private Task<JsonNode> treeTask;
 
     public TreeVisualizer() {
         visualizer = new TreeView<>();
-        recycledNodes = new ArrayList<>();
         visualizer.setShowRoot(false);
         visualizer.setCache(true);
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setMaxSize(50, 50);
+        progressPane = new StackPane(progressIndicator);
         setContent(visualizer);
     }
 
     public void populate(String body) throws IOException {
-        JsonNode tree = EverestUtilities.jsonMapper.readTree(body);
-        this.populate(getTreeNode(null), "root", tree);
+        cancel();
+        show(EverestUtilities.jsonMapper.readTree(body));
     }
 
-    private void populate(TreeItem<String> rootItem, String rootName, JsonNode root) {
-        if (rootName.equals("root")) {
-            visualizer.setRoot(rootItem);
-        }
-
-        rootItem.setValue(rootName);
-
-        JsonNode currentNode;
-        List<TreeItem<String>> items = new ArrayList<>();
-
-        if (root.isArray()) {
-            Iterator<JsonNode> iterator = root.elements();
-            int i = 0;
-
-            while (iterator.hasNext()) {
-                currentNode = iterator.next();
+    public void populate(JSONDocument document) {
+        cancel();
+        visualizer.setRoot(null);
 
-                if (currentNode.isValueNode()) {
-                    items.add(getTreeNode(i++ + ": " + EverestUtilities.trimString(currentNode.toString())));
-                } else if (currentNode.isObject()) {
-                    TreeItem<String> newRoot = getTreeNode(null);
-                    newRoot.setExpanded(true);
-                    items.add(newRoot);
-                    populate(newRoot, i++ + ": [Anonymous Object]", currentNode);
+        Task<JsonNode> task = new Task<JsonNode>() {
+            @Override
+            protected JsonNode call() throws Exception {
+                try {
+                    return document.buildTree();
+                } finally {
+                    document.dispose();
                 }
             }
-        } else {
-            Iterator<Map.Entry<String, JsonNode>> iterator = root.fields();
-            Map.Entry<String, JsonNode> currentEntry;
-
-            while (iterator.hasNext()) {
-                currentEntry = iterator.next();
-                currentNode = currentEntry.getValue();
-
-                if (currentNode.isValueNode()) {
-                    items.add(getTreeNode(currentEntry.getKey() + ": "
-                            + EverestUtilities.trimString(currentNode.toString())));
-                } else if (currentNode.isArray() || currentNode.isObject()) {
-                    TreeItem<String> newRoot = getTreeNode(null);
-                    newRoot.setExpanded(true);
-                    items.add(newRoot);
-                    populate(newRoot, currentEntry.getKey(), currentNode);
-                }
-            }
-        }
-
-        rootItem.getChildren().addAll(items);
+        };
+        // Tasks cancelled before they start never get to call().
+        task.setOnCancelled(e -> document.dispose());
+
+        // A task which finished just before it was cancelled must not replace the tree of the next one.
+        task.setOnSucceeded(e -> {
+            if (treeTask != task)
+                return;
+
+            treeTask = null;
+            show(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            if (treeTask != task)
+                return;
+
+            treeTask = null;
+            setContent(visualizer);
+            LoggingService.logWarning("Could not build the tree for the visualizer.",
+                    (Exception) task.getException(), LocalDateTime.now());
+        });
+
+        treeTask = task;
+        setContent(progressPane);
+        treeExecutor.execute(task);
     }
 
-    private TreeItem<String> getTreeNode(String value) {
-        TreeItem<String> node;
+    private void show(JsonNode tree) {
+        setContent(visualizer);
 
-        if (recycledNodes.size() > 0) {
-            node = recycledNodes.get(lastNodeIndex);
-            recycledNodes.remove(lastNodeIndex--);
-        } else {
-            node = new TreeItem<>();
+        if (tree == null)
+            return;
+
+        JsonTreeItem root = new JsonTreeItem("root", tree);
+        // Only creates the items at the top level, since the root itself is hidden.
+        root.setExpanded(true);
+        visualizer.setRoot(root);
+    }
+
+    private void cancel() {
+        if (treeTask != null) {
+            treeTask.cancel();
+            treeTask = null;
         }
 
-        node.setValue(value);
-        node.getChildren().clear();
-        return node;
+        setContent(visualizer);
     }
 
     public void clear() {
-        recycledNodes.addAll(visualizer.getRoot().getChildren());
+        cancel();
         visualizer.setRoot(null);
-        System.gc();
     }
 }
@@ -1,5 +1,6 @@
 package com.rohitawate.everest.controllers.visualizers;
 
+import com.rohitawate.everest.format.JSONDocument;
 import javafx.scene.control.ScrollPane;
 
 public abstract class Visualizer extends ScrollPane {
@@ -11,5 +12,12 @@ public abstract class Visualizer extends ScrollPane {
 
     public abstract void populate(String body) throws Exception;
 
+    /**
+     * Populates the visualizer from a document which has already been parsed.
+     * Whatever the visualizer builds from it is built in the background, so this returns right away.
+     * The visualizer disposes the document once it is done with it.
+     */
+    public abstract void populate(JSONDocument document);
+
     public abstract void clear();
 }
@@ -1,6 +1,8 @@
 package com.rohitawate.everest.format;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 
 /**
  * Formats strings in various data formats.
@@ -13,4 +15,24 @@ public interface Formatter {
      * @throws IOException If the Formatter fails to format the given string.
      */
     String format(String unformatted) throws IOException;
-}
\ No newline at end of file
+
+    /**
+     * Formats the text read from the Reader into the Writer.
+     * Formatters which can stream should override this so that the text is never held in memory as a whole.
+     * The default implementation reads all of it and delegates to format(String).
+     *
+     * @param unformatted The source of the unformatted text
+     * @param formatted   The destination of the formatted text. It is flushed but not closed.
+     * @throws IOException If the Formatter fails to format the text.
+     */
+    default void format(Reader unformatted, Writer formatted) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        int count;
+        while ((count = unformatted.read(buffer)) != -1)
+            builder.append(buffer, 0, count);
+
+        formatted.write(format(builder.toString()));
+        formatted.flush();
+    }
+}
@@ -0,0 +1,45 @@
+package com.rohitawate.everest.format;
+
+/**
+ * Lays out bytes as a canonical hex dump: the offset, 16 bytes in hex and the same bytes as ASCII on every line.
+ * For example:
+ * <pre>
+ * 00000000  89 50 4e 47 0d 0a 1a 0a  00 00 00 0d 49 48 44 52  |.PNG........IHDR|
+ * </pre>
+ */
+public class HexDump {
+    private static final int BYTES_PER_LINE = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static String format(byte[] bytes) {
+        StringBuilder dump = new StringBuilder(bytes.length / BYTES_PER_LINE * 80 + 80);
+
+        for (int lineStart = 0; lineStart < bytes.length; lineStart += BYTES_PER_LINE) {
+            int lineEnd = Math.min(lineStart + BYTES_PER_LINE, bytes.length);
+            dump.append(String.format("%08x ", lineStart));
+
+            for (int i = lineStart; i < lineStart + BYTES_PER_LINE; i++) {
+                // Splits the line into two groups of 8
+                if (i - lineStart == BYTES_PER_LINE / 2)
+                    dump.append(' ');
+
+                if (i < lineEnd) {
+                    dump.append(' ');
+                    dump.append(HEX_DIGITS[(bytes[i] >> 4) & 0xF]);
+                    dump.append(HEX_DIGITS[bytes[i] & 0xF]);
+                } else {
+                    dump.append("   ");
+                }
+            }
+
+            dump.append("  |");
+            for (int i = lineStart; i < lineEnd; i++) {
+                int b = bytes[i] & 0xFF;
+                dump.append(b >= 0x20 && b < 0x7F ? (char) b : '.');
+            }
+            dump.append("|\n");
+        }
+
+        return dump.toString();
+    }
+}
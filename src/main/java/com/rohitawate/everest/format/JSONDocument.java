@@ -0,0 +1,461 @@
+package com.rohitawate.everest.format;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.rohitawate.everest.models.responses.ResponseBodyStore;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A JSON document parsed once into everything needed to render it: the pretty-printed text,
+ * the tokens of that text for highlighting and, from those tokens, the tree for visualizers.
+ * <p>
+ * The text is laid out the same way as by JSONFormatter, except that lines always end with '\n'
+ * and that numbers are kept as they were written.
+ * <p>
+ * The text is streamed into a ResponseBodyStore as it is printed, so it is subject to the same memory window
+ * as response bodies. Only the offsets and types of the tokens are kept on the heap.
+ */
+public class JSONDocument {
+    private static final JsonFactory factory = new JsonFactory();
+    private static final JsonToken[] tokenTypes = JsonToken.values();
+    private static final String INDENT = "  ";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // Number of tokens replayed by buildTree() between checks for interruption
+    private static final int INTERRUPTION_CHECK_INTERVAL = 4096;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+    private final ResponseBodyStore text;
+    // Characters printed but not yet written to the text, which are only written a buffer at a time
+    private char[] buffer;
+    private int buffered;
+    private Writer writer;
+    // Number of characters printed so far
+    private int length;
+
+    // The start and end offsets of every token in the text
+    private int[] tokenOffsets;
+    // The ordinals of the JsonTokens
+    private byte[] tokenTypeOrdinals;
+    private int tokenCount;
+
+    private JSONDocument() {
+        text = new ResponseBodyStore(StandardCharsets.UTF_8);
+        tokenOffsets = new int[2048];
+        tokenTypeOrdinals = new byte[1024];
+    }
+
+    /**
+     * Parses the JSON read from the Reader. The Reader is not closed.
+     *
+     * @throws IOException If the JSON is malformed or could not be read.
+     */
+    public static JSONDocument parse(Reader reader) throws IOException {
+        JSONDocument document = new JSONDocument();
+
+        try (Writer writer = new OutputStreamWriter(document.text.openOutputStream(), StandardCharsets.UTF_8);
+             JsonParser parser = factory.createParser(reader)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            document.writer = writer;
+            document.buffer = new char[WRITE_BUFFER_SIZE];
+            document.read(parser);
+            document.flush();
+        } catch (IOException e) {
+            document.text.dispose();
+            throw e;
+        } finally {
+            document.writer = null;
+            document.buffer = null;
+        }
+
+        return document;
+    }
+
+    private void read(JsonParser parser) throws IOException {
+        // Whether each of the containers the parser is in is an array, innermost first
+        Deque<Boolean> arrays = new ArrayDeque<>();
+        // Whether the current container has no entries so far
+        boolean empty = true;
+        JsonToken token;
+
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                arrays.pop();
+                if (token == JsonToken.END_OBJECT && !empty)
+                    newLine(arrays.size());
+                else
+                    append(' ');
+
+                addToken(token, token == JsonToken.END_OBJECT ? "}" : "]");
+                empty = false;
+                continue;
+            }
+
+            if (token == JsonToken.FIELD_NAME) {
+                append(empty ? "" : ",");
+                newLine(arrays.size());
+                addString(token, parser.getCurrentName());
+                append(" : ");
+                empty = false;
+                continue;
+            }
+
+            if (arrays.isEmpty()) {
+                // Separates several root values
+                if (tokenCount > 0)
+                    append(' ');
+            } else if (arrays.peek()) {
+                append(empty ? " " : ", ");
+            }
+
+            switch (token) {
+                case START_OBJECT:
+                    addToken(token, "{");
+                    break;
+                case START_ARRAY:
+                    addToken(token, "[");
+                    break;
+                case VALUE_STRING:
+                    addString(token, parser.getText());
+                    break;
+                default:
+                    // Numbers are kept as they were written.
+                    addToken(token, parser.getText());
+            }
+
+            empty = false;
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                arrays.push(token == JsonToken.START_ARRAY);
+                empty = true;
+            }
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (buffered == buffer.length)
+            flush();
+
+        buffer[buffered++] = c;
+        length++;
+    }
+
+    private void append(String string) throws IOException {
+        for (int i = 0; i < string.length(); i++)
+            append(string.charAt(i));
+    }
+
+    private void flush() throws IOException {
+        writer.write(buffer, 0, buffered);
+        buffered = 0;
+    }
+
+    private void newLine(int depth) throws IOException {
+        append('\n');
+        for (int i = 0; i < depth; i++)
+            append(INDENT);
+    }
+
+    private void addToken(JsonToken type, String tokenText) throws IOException {
+        int start = length;
+        append(tokenText);
+        recordToken(type, start);
+    }
+
+    /**
+     * Appends the string quoted and escaped.
+     */
+    private void addString(JsonToken type, String string) throws IOException {
+        int start = length;
+        append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                case '\b':
+                    append("\\b");
+                    break;
+                case '\f':
+                    append("\\f");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        append("\\u00");
+                        append(HEX_DIGITS[c >> 4]);
+                        append(HEX_DIGITS[c & 0xF]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+
+        append('"');
+        recordToken(type, start);
+    }
+
+    private void recordToken(JsonToken type, int start) {
+        if (tokenCount == tokenTypeOrdinals.length) {
+            tokenTypeOrdinals = Arrays.copyOf(tokenTypeOrdinals, tokenCount * 2);
+            tokenOffsets = Arrays.copyOf(tokenOffsets, tokenCount * 4);
+        }
+
+        tokenOffsets[2 * tokenCount] = start;
+        tokenOffsets[2 * tokenCount + 1] = length;
+        tokenTypeOrdinals[tokenCount] = (byte) type.ordinal();
+        tokenCount++;
+    }
+
+    /**
+     * @return The pretty-printed text. It is decoded afresh on every call, and is not retained by the document.
+     */
+    public String getText() throws IOException {
+        return text.asString();
+    }
+
+    /**
+     * @return The length of the pretty-printed text.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Builds the tree of the first root value by replaying the recorded tokens, without parsing the text again.
+     * The text of the tokens is read back in a single pass over the store.
+     * Being meant for background threads, it stops if the thread is interrupted.
+     *
+     * @return The tree, or null if the document is empty.
+     * @throws InterruptedException If the thread was interrupted.
+     * @throws IOException          If the text could not be read back, as when the document was disposed.
+     */
+    public JsonNode buildTree() throws InterruptedException, IOException {
+        JsonNodeFactory nodes = JsonNodeFactory.instance;
+        Deque<ContainerNode<?>> containers = new ArrayDeque<>();
+        JsonNode root = null;
+        String fieldName = null;
+
+        try (TokenReader tokens = new TokenReader(text.openReader())) {
+            for (int i = 0; i < tokenCount; i++) {
+                if (i % INTERRUPTION_CHECK_INTERVAL == 0 && Thread.interrupted())
+                    throw new InterruptedException();
+
+                int start = getTokenStart(i), end = getTokenEnd(i);
+                JsonNode node;
+
+                switch (getTokenType(i)) {
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        containers.pop();
+                        if (containers.isEmpty())
+                            return root;
+                        continue;
+                    case FIELD_NAME:
+                        fieldName = unquote(tokens.read(start, end));
+                        continue;
+                    case START_OBJECT:
+                        node = nodes.objectNode();
+                        break;
+                    case START_ARRAY:
+                        node = nodes.arrayNode();
+                        break;
+                    case VALUE_STRING:
+                        node = nodes.textNode(unquote(tokens.read(start, end)));
+                        break;
+                    case VALUE_NUMBER_INT:
+                        node = integerNode(tokens.read(start, end));
+                        break;
+                    case VALUE_NUMBER_FLOAT:
+                        node = nodes.numberNode(Double.parseDouble(tokens.read(start, end)));
+                        break;
+                    case VALUE_TRUE:
+                        node = nodes.booleanNode(true);
+                        break;
+                    case VALUE_FALSE:
+                        node = nodes.booleanNode(false);
+                        break;
+                    default:
+                        node = nodes.nullNode();
+                }
+
+                ContainerNode<?> parent = containers.peek();
+                if (parent == null)
+                    root = node;
+                else if (parent.isArray())
+                    ((ArrayNode) parent).add(node);
+                else
+                    ((ObjectNode) parent).set(fieldName, node);
+
+                if (node.isContainerNode())
+                    containers.push((ContainerNode<?>) node);
+                else if (parent == null)
+                    return root;
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Releases the text, along with its temporary file if it was spilled to disk.
+     * Readers opened before, such as that of a tree still being built, keep working.
+     */
+    public void dispose() {
+        text.dispose();
+    }
+
+    /**
+     * Creates the smallest of an int, long or BigInteger node for the number, as Jackson does.
+     */
+    private static JsonNode integerNode(String number) {
+        if (number.length() <= 18) {
+            long value = Long.parseLong(number);
+            if (value == (int) value)
+                return JsonNodeFactory.instance.numberNode((int) value);
+
+            return JsonNodeFactory.instance.numberNode(value);
+        }
+
+        BigInteger value = new BigInteger(number);
+        if (value.bitLength() < 64)
+            return JsonNodeFactory.instance.numberNode(value.longValue());
+
+        return JsonNodeFactory.instance.numberNode(value);
+    }
+
+    /**
+     * Reverses addString() for a string token.
+     */
+    private static String unquote(String token) {
+        int escape = token.indexOf('\\');
+        if (escape < 0)
+            return token.substring(1, token.length() - 1);
+
+        StringBuilder string = new StringBuilder(token.length());
+        string.append(token, 1, escape);
+
+        for (int i = escape; i < token.length() - 1; i++) {
+            char c = token.charAt(i);
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+
+            c = token.charAt(++i);
+            switch (c) {
+                case 'n':
+                    string.append('\n');
+                    break;
+                case 'r':
+                    string.append('\r');
+                    break;
+                case 't':
+                    string.append('\t');
+                    break;
+                case 'b':
+                    string.append('\b');
+                    break;
+                case 'f':
+                    string.append('\f');
+                    break;
+                case 'u':
+                    string.append((char) Integer.parseInt(token.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    // Quotes and backslashes
+                    string.append(c);
+            }
+        }
+
+        return string.toString();
+    }
+
+    /**
+     * @return The number of tokens in the text. Punctuation other than brackets and braces is not counted.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public JsonToken getTokenType(int index) {
+        return tokenTypes[tokenTypeOrdinals[index]];
+    }
+
+    /**
+     * @return The offset in the text at which the token starts.
+     */
+    public int getTokenStart(int index) {
+        return tokenOffsets[2 * index];
+    }
+
+    /**
+     * @return The offset in the text just past the end of the token.
+     */
+    public int getTokenEnd(int index) {
+        return tokenOffsets[2 * index + 1];
+    }
+
+    /**
+     * Reads the text of tokens in the order in which they appear, skipping whatever lies between them.
+     */
+    private static class TokenReader implements Closeable {
+        private final Reader reader;
+        private long position;
+
+        TokenReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        String read(int start, int end) throws IOException {
+            while (position < start) {
+                long skipped = reader.skip(start - position);
+                if (skipped <= 0)
+                    throw new EOFException("The text ended before token at " + start);
+                position += skipped;
+            }
+
+            char[] token = new char[end - start];
+            int count = 0;
+            while (count < token.length) {
+                int read = reader.read(token, count, token.length - count);
+                if (read < 0)
+                    throw new EOFException("The text ended within token at " + start);
+                count += read;
+            }
+
+            position = end;
+            return new String(token);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -1,26 +1,43 @@
 package com.rohitawate.everest.format;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 
-import java.io.IOException;
+import java.io.*;
 
 /**
- * Formats JSON strings using Jackson's ObjectMapper.
+ * Formats JSON by copying the tokens read by a Jackson JsonParser straight to a pretty-printing JsonGenerator.
+ * <p>
+ * No tree is ever built, so formatting a body needs little more memory than the input and the output themselves.
  */
 public class JSONFormatter implements Formatter {
-    private static ObjectMapper mapper;
+    private static JsonFactory factory;
 
     JSONFormatter() {
-        mapper = new ObjectMapper();
-        mapper.configure(SerializationFeature.INDENT_OUTPUT, true);
+        factory = new JsonFactory();
+        // The Reader and Writer belong to the caller.
+        factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @Override
     public String format(String unformatted) throws IOException {
-        JsonNode tree = mapper.readTree(unformatted);
-        return mapper.writeValueAsString(tree);
+        // Pretty-printing mostly adds whitespace, so the output is usually a little larger than the input.
+        StringWriter writer = new StringWriter(unformatted.length() + unformatted.length() / 4);
+        format(new StringReader(unformatted), writer);
+        return writer.toString();
+    }
+
+    @Override
+    public void format(Reader unformatted, Writer formatted) throws IOException {
+        try (JsonParser parser = factory.createParser(unformatted);
+             JsonGenerator generator = factory.createGenerator(formatted)) {
+            generator.useDefaultPrettyPrinter();
+
+            while (parser.nextToken() != null)
+                generator.copyCurrentEvent(parser);
+        }
     }
 
     @Override
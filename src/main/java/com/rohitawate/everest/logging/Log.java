@@ -16,9 +16,19 @@
 
 package com.rohitawate.everest.logging;
 
+/**
+ * A single log entry. Entries are immutable so that they can be handed over to the writer thread as they are.
+ */
 class Log {
-    Level level;
-    String message;
-    String time;
-    Exception exception;
+    final Level level;
+    final String message;
+    final String time;
+    final Exception exception;
+
+    Log(Level level, String message, Exception exception, String time) {
+        this.level = level;
+        this.message = message;
+        this.exception = exception;
+        this.time = time;
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue of log entries for any number of producers and a single consumer.
+ * <p>
+ * Every slot carries a sequence number which tells whose turn it is. A slot at position p is free for
+ * the producer which claims p when its sequence is p, and holds an entry for the consumer when it is p + 1.
+ * Producers claim positions by incrementing the tail with a CAS, and never wait on each other or the consumer.
+ * A full buffer is reported to the producer rather than waited upon.
+ */
+class LogRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final Log[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Only ever accessed by the consumer
+    private long head;
+
+    LogRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new Log[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * @return false if the buffer is full.
+     */
+    boolean offer(Log log) {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = log;
+                    // Publishes the entry to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                // The consumer has not yet taken the entry written a lap ago
+                return false;
+            } else {
+                // Another producer claimed this position first
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to maxEntries entries into the batch. May only be called by the consumer.
+     *
+     * @return The number of entries moved.
+     */
+    int drainTo(List<Log> batch, int maxEntries) {
+        int drained = 0;
+
+        while (drained < maxEntries) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1)
+                break;
+
+            batch.add(slots[index]);
+            slots[index] = null;
+            // Frees the slot for the producer a lap ahead
+            sequences.set(index, head + capacity);
+
+            head++;
+            drained++;
+        }
+
+        return drained;
+    }
+
+    /**
+     * May only be called by the consumer.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -17,43 +17,90 @@
 package com.rohitawate.everest.logging;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
+/**
+ * Writes batches of logs to the respective day's log file.
+ * <p>
+ * The file is opened once and kept open, and every batch is written with a single flush.
+ * The entry template is split into its literal parts and placeholders up front,
+ * so that entries are rendered by appending the parts instead of searching and replacing in the template.
+ */
 class Logger {
+    private static final String PLACEHOLDER_DELIMITER = "%%";
+
     private Level writerLevel;
-    private String logEntryTemplate;
     private String logFilePath = "Everest/logs/" + LocalDate.now() + ".html";
+    private Writer writer;
+
+    // The template alternates between literal text and placeholders, starting and ending with literal text.
+    private final List<String> templateParts = new ArrayList<>();
+
+    private final StringBuilder batchBuilder = new StringBuilder();
 
     Logger(Level writerLevel) {
         this.writerLevel = writerLevel;
 
         createLogsFile();
-        logEntryTemplate = readFile(getClass().getResourceAsStream("/templates/LogEntry.html"));
+        parseTemplate(readFile(getClass().getResourceAsStream("/templates/LogEntry.html")));
+
+        try {
+            writer = Files.newBufferedWriter(Paths.get(logFilePath), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Appends the log to the respective day's log file.
-     *
+     * Prints the logs to the console and appends those at or above the writer's level to the log file.
      */
-    synchronized void log() {
-        if (LoggingService.log.level.equals(Level.INFO)) {
-            System.out.println(LoggingService.log.level + " " + LoggingService.log.time + ": " + LoggingService.log.message);
-        } else {
-            System.err.println(LoggingService.log.level + " " + LoggingService.log.time + ": " + LoggingService.log.message);
-        }
+    synchronized void log(List<Log> logs) {
+        batchBuilder.setLength(0);
 
-        if (LoggingService.log.level.greaterThanEqualTo(this.writerLevel)) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFilePath, true))) {
-                writer.flush();
-                writer.append(getLogEntry(LoggingService.log));
-            } catch (IOException e) {
-                e.printStackTrace();
+        for (Log log : logs) {
+            if (log.level.equals(Level.INFO)) {
+                System.out.println(log.level + " " + log.time + ": " + log.message);
+            } else {
+                System.err.println(log.level + " " + log.time + ": " + log.message);
             }
+
+            if (log.level.greaterThanEqualTo(this.writerLevel))
+                appendLogEntry(log, batchBuilder);
+        }
+
+        if (writer == null || batchBuilder.length() == 0)
+            return;
+
+        try {
+            writer.append(batchBuilder);
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
+    synchronized void close() {
+        if (writer == null)
+            return;
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        writer = null;
+    }
+
     /**
      * Generates HTML with the log information.
      * Different log levels are color-coded for improved readability.
@@ -63,31 +110,67 @@ class Logger {
      * Yellow = Warning
      * Green = Info
      */
-    private String getLogEntry(Log log) {
-        String logEntry = this.logEntryTemplate;
-        logEntry = logEntry.replace("%% LogLevel %%", log.level.toString());
-        logEntry = logEntry.replace("%% Time %%", log.time);
-        logEntry = logEntry.replace("%% Message %%", log.message);
-        StringBuilder builder = new StringBuilder();
+    private void appendLogEntry(Log log, StringBuilder builder) {
+        for (int i = 0; i < templateParts.size(); i++) {
+            if (i % 2 == 0) {
+                builder.append(templateParts.get(i));
+                continue;
+            }
 
-        if (log.exception != null) {
-            StackTraceElement[] stackTrace = log.exception.getStackTrace();
-            builder.append(log.exception.toString());
-            builder.append("<br>\n");
-            if (stackTrace.length != 0) {
-                for (StackTraceElement element : log.exception.getStackTrace()) {
-                    builder.append(" -- ");
-                    builder.append(element.toString());
-                    builder.append("<br>\n");
-                }
-            } else {
-                builder.append("Stack trace unavailable.");
+            switch (templateParts.get(i)) {
+                case "LogLevel":
+                    builder.append(log.level.toString());
+                    break;
+                case "Time":
+                    builder.append(log.time);
+                    break;
+                case "Message":
+                    builder.append(log.message);
+                    break;
+                case "StackTrace":
+                    appendStackTrace(log.exception, builder);
+                    break;
+            }
+        }
+    }
+
+    private static void appendStackTrace(Exception exception, StringBuilder builder) {
+        if (exception == null)
+            return;
+
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        builder.append(exception.toString());
+        builder.append("<br>\n");
+        if (stackTrace.length != 0) {
+            for (StackTraceElement element : stackTrace) {
+                builder.append(" -- ");
+                builder.append(element.toString());
+                builder.append("<br>\n");
             }
+        } else {
+            builder.append("Stack trace unavailable.");
         }
+    }
 
-        logEntry = logEntry.replace("%% StackTrace %%", builder.toString());
+    /**
+     * Splits the template at its placeholders, which are of the form '%% Name %%'.
+     */
+    private void parseTemplate(String template) {
+        int position = 0;
 
-        return logEntry;
+        while (true) {
+            int start = template.indexOf(PLACEHOLDER_DELIMITER, position);
+            int end = start < 0 ? -1 : template.indexOf(PLACEHOLDER_DELIMITER, start + PLACEHOLDER_DELIMITER.length());
+
+            if (end < 0) {
+                templateParts.add(template.substring(position));
+                return;
+            }
+
+            templateParts.add(template.substring(position, start));
+            templateParts.add(template.substring(start + PLACEHOLDER_DELIMITER.length(), end).trim());
+            position = end + PLACEHOLDER_DELIMITER.length();
+        }
     }
 
     private void createLogsFile() {
@@ -16,51 +16,125 @@
 
 package com.rohitawate.everest.logging;
 
-import com.google.common.util.concurrent.MoreExecutors;
+import com.rohitawate.everest.settings.Settings;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.Executor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Hands logs over to a background writer, so that the calling thread never waits on the disk.
+ * <p>
+ * Logs are queued in a bounded, lock-free ring buffer which the writer drains in batches.
+ * When the buffer is full, logs are either dropped (and counted, the count being logged once there is room)
+ * or the caller waits for room, as set by Settings.logOverflowPolicy.
+ * The logs still queued when the JVM shuts down are written out before it exits.
+ */
 public class LoggingService {
-    private static Executor executor = MoreExecutors.directExecutor();
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long OVERFLOW_WAIT = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long SHUTDOWN_TIMEOUT = 2000;
+
     private static final Logger logger = new Logger(Level.INFO);
     private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-    static final Log log = new Log();
+    private static final LogRingBuffer buffer = new LogRingBuffer(BUFFER_CAPACITY);
+    private static final AtomicInteger droppedLogs = new AtomicInteger();
+
+    private static volatile boolean running = true;
+    private static volatile boolean writerIdle;
+    private static final Thread writer;
+
+    static {
+        writer = new Thread(LoggingService::writeLogs, "Everest log writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(LoggingService::flush, "Everest log flusher"));
+    }
 
     public static void logSevere(String message, Exception exception, LocalDateTime time) {
-        setValues(message, exception, time);
-        executor.execute(severeLogger);
+        enqueue(new Log(Level.SEVERE, message, exception, dateFormat.format(time)));
     }
 
     public static void logWarning(String message, Exception exception, LocalDateTime time) {
-        setValues(message, exception, time);
-        executor.execute(warningLogger);
+        enqueue(new Log(Level.WARNING, message, exception, dateFormat.format(time)));
     }
 
     public static void logInfo(String message, LocalDateTime time) {
-        setValues(message, null, time);
-        executor.execute(infoLogger);
+        enqueue(new Log(Level.INFO, message, null, dateFormat.format(time)));
+    }
+
+    private static void enqueue(Log log) {
+        if (!buffer.offer(log)) {
+            if (!"Block".equalsIgnoreCase(Settings.logOverflowPolicy)) {
+                droppedLogs.incrementAndGet();
+                return;
+            }
+
+            // Waits for the writer to make room, unless it has already stopped.
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(OVERFLOW_WAIT);
+            } while (!buffer.offer(log) && writer.isAlive());
+        }
+
+        if (writerIdle)
+            LockSupport.unpark(writer);
     }
 
-    private static void setValues(String message, Exception exception, LocalDateTime time) {
-        log.message = message;
-        log.exception = exception;
-        log.time = dateFormat.format(time);
+    private static void writeLogs() {
+        List<Log> batch = new ArrayList<>(BATCH_SIZE + 1);
+
+        while (running) {
+            if (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+                write(batch);
+                continue;
+            }
+
+            writerIdle = true;
+            // Checked again after announcing that the writer is idle, so that no wake-up is missed.
+            if (buffer.isEmpty() && running)
+                LockSupport.parkNanos(IDLE_WAIT);
+            writerIdle = false;
+        }
+
+        // Writes out whatever was logged till the shutdown
+        while (buffer.drainTo(batch, BATCH_SIZE) > 0)
+            write(batch);
+        write(batch);
+
+        logger.close();
     }
 
-    private static Runnable severeLogger = () -> {
-        log.level = Level.SEVERE;
-        logger.log();
-    };
+    private static void write(List<Log> batch) {
+        int dropped = droppedLogs.getAndSet(0);
+        if (dropped > 0)
+            batch.add(new Log(Level.WARNING, dropped + " log entries were dropped as the log buffer was full.",
+                    null, dateFormat.format(LocalDateTime.now())));
 
-    private static Runnable warningLogger = () -> {
-        log.level = Level.WARNING;
-        logger.log();
-    };
+        if (!batch.isEmpty())
+            logger.log(batch);
 
-    private static Runnable infoLogger = () -> {
-        log.level = Level.INFO;
-        logger.log();
-    };
+        batch.clear();
+    }
+
+    /**
+     * Stops the writer once it has written out the logs queued so far.
+     */
+    private static void flush() {
+        running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -16,42 +16,266 @@
 
 package com.rohitawate.everest.models.responses;
 
+import com.rohitawate.everest.format.HexDump;
+import com.rohitawate.everest.format.JSONDocument;
 import com.rohitawate.everest.logging.LoggingService;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.time.LocalDateTime;
 
 public class EverestResponse {
-    private String body;
+    /**
+     * Where the response came from, when the ResponseCache is enabled.
+     */
+    public enum CacheStatus {
+        // Received from the server
+        NETWORK,
+        // Served from the cache without making a request
+        CACHE,
+        // Served from the cache after the server confirmed, with a 304, that it had not changed
+        REVALIDATED
+    }
+
+    private ResponseBodyStore bodyStore;
+    private JSONDocument jsonDocument;
+    private IOException jsonError;
     private int statusCode;
-    private long time;
-    private int size;
+    private TimingBreakdown timing;
+    private long wireSize;
+    private long decodedSize;
+    private long contentLength = -1;
+    private String contentEncoding;
+    private long decodeTime;
+    private CacheStatus cacheStatus = CacheStatus.NETWORK;
+    private String protocol;
+    private File downloadFile;
+    private ResponseStream stream;
+    private byte[] preview;
     private MediaType mediaType;
     private MultivaluedMap<String, String> headers;
 
-    public String getBody() {
-        return body;
+    /**
+     * Decodes the body from the underlying ResponseBodyStore.
+     * The String is built afresh on every call and is not retained by the response.
+     */
+    public String getBody() throws IOException {
+        if (bodyStore == null)
+            return null;
+
+        return bodyStore.asString();
+    }
+
+    /**
+     * Parses the body as JSON the first time it is called, and returns the same JSONDocument thereafter,
+     * so that everything rendering the response shares a single parse.
+     * The RequestManager calls this on its worker thread, so that the JavaFX thread finds the parse done.
+     *
+     * @return The parsed body, or null if there is no body.
+     * @throws IOException If the body is not valid JSON. The same exception is thrown by later calls.
+     */
+    public JSONDocument getJSONDocument() throws IOException {
+        if (jsonError != null)
+            throw jsonError;
+
+        if (jsonDocument == null && bodyStore != null) {
+            try (Reader reader = bodyStore.openReader()) {
+                jsonDocument = JSONDocument.parse(reader);
+            } catch (IOException e) {
+                jsonError = e;
+                throw e;
+            }
+        }
+
+        return jsonDocument;
+    }
+
+    /**
+     * Hands the parsed body over to the caller, which disposes it once it is done with it,
+     * since visualizers keep reading it after the response itself has been disposed.
+     *
+     * @return The parsed body, or null if there is no body.
+     * @throws IOException If the body is not valid JSON.
+     */
+    public JSONDocument releaseJSONDocument() throws IOException {
+        JSONDocument document = getJSONDocument();
+        jsonDocument = null;
+        return document;
+    }
+
+    /**
+     * @return The file the body was saved to instead of being stored, or null if it was stored.
+     */
+    public File getDownloadFile() {
+        return downloadFile;
+    }
+
+    public void setDownloadFile(File downloadFile) {
+        this.downloadFile = downloadFile;
+    }
+
+    /**
+     * @return The first few KB of a body saved to a file, to be shown in its place.
+     */
+    public byte[] getPreview() {
+        return preview;
     }
 
-    public void setBody(String body) {
-        this.body = body;
+    public void setPreview(byte[] preview) {
+        this.preview = preview;
+    }
+
+    /**
+     * @return Where the body was saved, followed by a hex dump of the preview, or null if it was not saved to a file.
+     */
+    public String describeDownload() {
+        if (downloadFile == null)
+            return null;
+
+        String description = "Saved " + decodedSize + " B to " + downloadFile.getAbsolutePath() + "\n\n"
+                + HexDump.format(preview);
+
+        return decodedSize > preview.length ? description + "...\n" : description;
+    }
+
+    /**
+     * @return The events of a streaming response, which are not stored otherwise, or null if it was not streamed.
+     */
+    public ResponseStream getStream() {
+        return stream;
+    }
+
+    public void setStream(ResponseStream stream) {
+        this.stream = stream;
+    }
+
+    public ResponseBodyStore getBodyStore() {
+        return bodyStore;
+    }
+
+    public void setBodyStore(ResponseBodyStore bodyStore) {
+        this.bodyStore = bodyStore;
+    }
+
+    /**
+     * Releases the memory and the temporary file held by the body.
+     * Must be called once the body has been rendered. Files the body was saved to are kept.
+     */
+    public void dispose() {
+        if (jsonDocument != null) {
+            jsonDocument.dispose();
+            jsonDocument = null;
+        }
+
+        if (bodyStore != null)
+            bodyStore.dispose();
     }
 
+    /**
+     * @return Total time taken by the request, including the download of the body, in milliseconds.
+     */
     public long getTime() {
-        return time;
+        if (timing == null)
+            return 0;
+
+        return timing.getTotalTime() / 1_000_000;
+    }
+
+    public TimingBreakdown getTiming() {
+        return timing;
+    }
+
+    public void setTiming(TimingBreakdown timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * @return Number of bytes of the body received on the wire, before any content-encoding was decoded.
+     */
+    public long getWireSize() {
+        return wireSize;
+    }
+
+    public void setWireSize(long wireSize) {
+        this.wireSize = wireSize;
+    }
+
+    /**
+     * @return Number of bytes of the body once decoded. Equal to the wire size if the body was not encoded.
+     */
+    public long getDecodedSize() {
+        return decodedSize;
+    }
+
+    public void setDecodedSize(long decodedSize) {
+        this.decodedSize = decodedSize;
+    }
+
+    /**
+     * @return The Content-Length declared by the server, or -1 if it did not declare one.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @return The content-encoding which was decoded, or null if the body was stored as it was received.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return Time spent in decoding the body, excluding the time spent waiting for it, in nanoseconds.
+     */
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    public void setDecodeTime(long decodeTime) {
+        this.decodeTime = decodeTime;
+    }
+
+    /**
+     * @return Average rate at which the body was received on the wire, in bytes per second,
+     * or 0 if it was received too quickly to measure.
+     */
+    public double getTransferRate() {
+        if (timing == null || timing.getDownloadTime() <= 0)
+            return 0;
+
+        return wireSize * 1_000_000_000.0 / timing.getDownloadTime();
+    }
+
+    public CacheStatus getCacheStatus() {
+        return cacheStatus;
     }
 
-    public void setTime(long initialTime, long finalTime) {
-        this.time = finalTime - initialTime;
+    public void setCacheStatus(CacheStatus cacheStatus) {
+        this.cacheStatus = cacheStatus;
     }
 
-    public int getSize() {
-        return size;
+    /**
+     * @return The protocol over which the response was received, such as "HTTP/2", or null if it was not received
+     * over the network.
+     */
+    public String getProtocol() {
+        return protocol;
     }
 
-    public void setSize(int size) {
-        this.size = size;
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
     }
 
     public MediaType getMediaType() {
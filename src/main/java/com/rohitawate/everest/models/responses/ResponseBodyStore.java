@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.models.responses;
+
+import com.rohitawate.everest.settings.Settings;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Holds the raw bytes of a response body without ever materializing them as a single String.
+ * <p>
+ * Bytes are buffered on the heap in fixed-size chunks until the memory window
+ * (Settings.responseBodyMemoryWindow) is exceeded. At that point, the chunks are flushed
+ * to a temporary file under Everest/temp/ and every subsequent byte is written straight to disk.
+ * Consumers read the body back lazily through openInputStream() or openReader().
+ * <p>
+ * Thus, the heap cost of receiving a response is bounded by the memory window
+ * rather than being proportional to the size of the body.
+ */
+public class ResponseBodyStore {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String TEMP_DIRECTORY = "Everest/temp/";
+
+    private final Charset charset;
+    private final long memoryWindow;
+
+    private List<byte[]> chunks;
+    private int lastChunkLength;
+    private long size;
+
+    private File spillFile;
+    private OutputStream spillStream;
+    private boolean sealed;
+
+    public ResponseBodyStore(Charset charset) {
+        this(charset, Settings.responseBodyMemoryWindow);
+    }
+
+    public ResponseBodyStore(Charset charset, long memoryWindow) {
+        this.charset = charset;
+        this.memoryWindow = memoryWindow;
+        this.chunks = new ArrayList<>();
+    }
+
+    /**
+     * Consumes the given stream completely into the store and seals it.
+     *
+     * @return The number of bytes read from the stream.
+     */
+    public long readFrom(InputStream stream) throws IOException {
+        long read = 0;
+
+        try (OutputStream output = openOutputStream()) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+                read += count;
+            }
+        } finally {
+            stream.close();
+        }
+
+        return read;
+    }
+
+    /**
+     * Returns a stream which appends to the store.
+     * The store is sealed, and cannot be written to any further, once the stream is closed.
+     */
+    public OutputStream openOutputStream() {
+        if (sealed)
+            throw new IllegalStateException("ResponseBodyStore has already been sealed.");
+
+        return new StoreOutputStream();
+    }
+
+    /**
+     * Returns a fresh stream over the body. May be called any number of times once the store is sealed.
+     */
+    public InputStream openInputStream() throws IOException {
+        if (!sealed)
+            throw new IllegalStateException("ResponseBodyStore is still being written to.");
+
+        if (spillFile != null)
+            return new BufferedInputStream(new FileInputStream(spillFile), CHUNK_SIZE);
+
+        List<InputStream> streams = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = i == chunks.size() - 1 ? lastChunkLength : CHUNK_SIZE;
+            streams.add(new ByteArrayInputStream(chunks.get(i), 0, length));
+        }
+
+        Enumeration<InputStream> enumeration = Collections.enumeration(streams);
+        return new SequenceInputStream(enumeration);
+    }
+
+    /**
+     * Returns a Reader which decodes the body using the charset of the response.
+     */
+    public Reader openReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(openInputStream(), charset));
+    }
+
+    /**
+     * Decodes the entire body into a String.
+     * Only meant for consumers that truly need the whole text at once, such as the code area.
+     */
+    public String asString() throws IOException {
+        StringBuilder builder = new StringBuilder((int) Math.min(size, Integer.MAX_VALUE - 8));
+
+        try (Reader reader = openReader()) {
+            char[] buffer = new char[CHUNK_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) != -1)
+                builder.append(buffer, 0, count);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Size of the body in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Releases the heap chunks and deletes the temporary file, if any.
+     */
+    public void dispose() {
+        chunks = new ArrayList<>();
+        lastChunkLength = 0;
+        size = 0;
+
+        try {
+            if (spillStream != null)
+                spillStream.close();
+        } catch (IOException ignored) {
+        }
+
+        if (spillFile != null && !spillFile.delete())
+            spillFile.deleteOnExit();
+
+        spillStream = null;
+        spillFile = null;
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        if (spillStream == null && size + length > memoryWindow)
+            spill();
+
+        size += length;
+
+        if (spillStream != null) {
+            spillStream.write(bytes, offset, length);
+        } else {
+            while (length > 0) {
+                if (chunks.isEmpty() || lastChunkLength == CHUNK_SIZE) {
+                    chunks.add(new byte[CHUNK_SIZE]);
+                    lastChunkLength = 0;
+                }
+
+                int count = Math.min(length, CHUNK_SIZE - lastChunkLength);
+                System.arraycopy(bytes, offset, chunks.get(chunks.size() - 1), lastChunkLength, count);
+                lastChunkLength += count;
+                offset += count;
+                length -= count;
+            }
+        }
+    }
+
+    /**
+     * Moves the chunks buffered so far to a temporary file.
+     */
+    private void spill() throws IOException {
+        File tempDirectory = new File(TEMP_DIRECTORY);
+        if (!tempDirectory.exists())
+            tempDirectory.mkdirs();
+
+        spillFile = File.createTempFile("response-", ".body", tempDirectory);
+        spillFile.deleteOnExit();
+        spillStream = new BufferedOutputStream(new FileOutputStream(spillFile), CHUNK_SIZE);
+
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = i == chunks.size() - 1 ? lastChunkLength : CHUNK_SIZE;
+            spillStream.write(chunks.get(i), 0, length);
+        }
+
+        chunks = new ArrayList<>();
+        lastChunkLength = 0;
+    }
+
+    private void seal() throws IOException {
+        sealed = true;
+
+        if (spillStream != null) {
+            spillStream.close();
+            spillStream = null;
+        }
+    }
+
+    private class StoreOutputStream extends OutputStream {
+        private final byte[] single = new byte[1];
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed.");
+
+            ResponseBodyStore.this.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+            seal();
+        }
+    }
+}
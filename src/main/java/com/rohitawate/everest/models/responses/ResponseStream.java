@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.models.responses;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of a streaming response, such as Server-Sent Events or newline-delimited JSON,
+ * filled in by the RequestManager as every event arrives and read by the response pane as it is being filled.
+ * <p>
+ * Lines are kept in a ring buffer, so only the most recent lines are retained however long the stream runs.
+ * Every line is prefixed with the time at which its event arrived.
+ * <p>
+ * Lines are numbered from 0 in the order in which they were added, so that readers can ask for the lines
+ * added since they last looked, whether or not those lines are still retained.
+ */
+public class ResponseStream {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private final String[] lines;
+    private long lineCount;
+    private long eventCount;
+    private volatile boolean finished;
+
+    /**
+     * @param capacity Number of lines retained.
+     */
+    public ResponseStream(int capacity) {
+        this.lines = new String[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Adds the lines of an event which arrived just now.
+     */
+    public void addEvent(List<String> eventLines) {
+        String timestamp = "[" + LocalTime.now().format(TIMESTAMP_FORMAT) + "] ";
+
+        synchronized (this) {
+            for (String line : eventLines)
+                lines[(int) (lineCount++ % lines.length)] = timestamp + line;
+
+            eventCount++;
+        }
+    }
+
+    /**
+     * @return The lines added since the line numbered 'from', or as many of the latest of them as are retained.
+     */
+    public List<String> getLines(long from) {
+        List<String> newLines = new ArrayList<>();
+        getLines(from, newLines);
+        return newLines;
+    }
+
+    /**
+     * Adds the lines added since the line numbered 'from', or as many of the latest of them as are retained, to 'into'.
+     * Readers which follow the stream should continue from the returned line, since more lines may be added
+     * as soon as this returns.
+     *
+     * @return The number of the line following the last one added.
+     */
+    public synchronized long getLines(long from, List<String> into) {
+        for (long line = Math.max(from, getFirstRetainedLine()); line < lineCount; line++)
+            into.add(lines[(int) (line % lines.length)]);
+
+        return lineCount;
+    }
+
+    /**
+     * @return The retained lines, joined by new lines.
+     */
+    public String getText() {
+        return String.join("\n", getLines(0));
+    }
+
+    /**
+     * @return Number of lines added so far, including those no longer retained.
+     */
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return The number of the oldest line which is still retained.
+     */
+    public synchronized long getFirstRetainedLine() {
+        return Math.max(lineCount - lines.length, 0);
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Marks the stream as having ended, either because the server closed it or because the request was cancelled.
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.models.responses;
+
+/**
+ * The phases of a single request, in nanoseconds, in the order in which they occur:
+ * <ol>
+ * <li>DNS - Resolving the host name.</li>
+ * <li>Connect - Establishing the TCP connection.</li>
+ * <li>TLS - Performing the TLS handshake, for HTTPS requests.</li>
+ * <li>Waiting - Sending the request and waiting for the first byte of the response.
+ * This is where the server's think time shows up.</li>
+ * <li>Download - Receiving the body of the response.</li>
+ * </ol>
+ * The DNS, connect and TLS phases are 0 when a pooled connection was re-used, and UNAVAILABLE
+ * when the connector does not report them. In the latter case, they are counted as part of the waiting phase.
+ */
+public class TimingBreakdown {
+    public static final long UNAVAILABLE = -1;
+
+    private final long dnsTime;
+    private final long connectTime;
+    private final long tlsTime;
+    private final long timeToFirstByte;
+    private final long downloadTime;
+
+    /**
+     * @param timeToFirstByte Time from the start of the request till the response headers were received,
+     *                        including the DNS, connect and TLS phases.
+     */
+    public TimingBreakdown(long dnsTime, long connectTime, long tlsTime, long timeToFirstByte, long downloadTime) {
+        this.dnsTime = dnsTime;
+        this.connectTime = connectTime;
+        this.tlsTime = tlsTime;
+        this.timeToFirstByte = timeToFirstByte;
+        this.downloadTime = downloadTime;
+    }
+
+    public long getDnsTime() {
+        return dnsTime;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public long getTlsTime() {
+        return tlsTime;
+    }
+
+    public long getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * @return Time to first byte, less the phases spent in setting up the connection.
+     */
+    public long getWaitingTime() {
+        long waitingTime = timeToFirstByte;
+        if (dnsTime > 0)
+            waitingTime -= dnsTime;
+        if (connectTime > 0)
+            waitingTime -= connectTime;
+        if (tlsTime > 0)
+            waitingTime -= tlsTime;
+
+        return Math.max(waitingTime, 0);
+    }
+
+    public long getDownloadTime() {
+        return downloadTime;
+    }
+
+    public long getTotalTime() {
+        return timeToFirstByte + downloadTime;
+    }
+
+    /**
+     * @return true if the connector reported the DNS, connect and TLS phases.
+     */
+    public boolean hasConnectionPhases() {
+        return dnsTime != UNAVAILABLE;
+    }
+
+    /**
+     * @return true if the request was sent over a pooled connection which was already open.
+     */
+    public boolean isConnectionReused() {
+        return dnsTime == 0 && connectTime == 0 && tlsTime == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        if (hasConnectionPhases()) {
+            builder.append("DNS ").append(toMillis(dnsTime)).append(", ")
+                    .append("Connect ").append(toMillis(connectTime)).append(", ")
+                    .append("TLS ").append(toMillis(tlsTime)).append(", ");
+        }
+
+        builder.append("Waiting ").append(toMillis(getWaitingTime())).append(", ")
+                .append("Download ").append(toMillis(downloadTime)).append(", ")
+                .append("Total ").append(toMillis(getTotalTime()));
+
+        return builder.toString();
+    }
+
+    /**
+     * Formats a duration in nanoseconds as milliseconds with up to two decimal places.
+     */
+    public static String toMillis(long nanos) {
+        if (nanos == UNAVAILABLE)
+            return "-";
+
+        return String.format("%.2f ms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+
+/**
+ * Counts the bytes of response entities as they come off the connection, before any content-encoding is decoded.
+ * <p>
+ * Jersey runs response filters on the thread which invoked the request, so the counting stream is handed over
+ * to the RequestTrace bound to that thread, if any.
+ */
+class ByteCountingFilter implements ClientResponseFilter {
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) {
+        if (!responseContext.hasEntity())
+            return;
+
+        ByteCountingInputStream stream = new ByteCountingInputStream(responseContext.getEntityStream());
+        responseContext.setEntityStream(stream);
+        RequestTrace.setWireStream(stream);
+    }
+}
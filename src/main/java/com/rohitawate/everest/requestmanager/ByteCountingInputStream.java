@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the bytes read through it, optionally reporting the running count to a listener after every read.
+ * Also adds up the time spent in reading, which includes the time spent waiting on the underlying stream.
+ */
+class ByteCountingInputStream extends FilterInputStream {
+    private long count;
+    private long readTime;
+    private volatile LongConsumer listener;
+
+    ByteCountingInputStream(InputStream stream) {
+        super(stream);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        readTime += System.nanoTime() - start;
+
+        if (b != -1)
+            add(1);
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        int read = super.read(bytes, offset, length);
+        readTime += System.nanoTime() - start;
+
+        if (read > 0)
+            add(read);
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        add(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // Bytes read again after a reset would be counted twice.
+        return false;
+    }
+
+    private void add(long bytes) {
+        count += bytes;
+
+        LongConsumer listener = this.listener;
+        if (listener != null)
+            listener.accept(count);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Time spent in reading from the stream so far, in nanoseconds.
+     */
+    long getReadTime() {
+        return readTime;
+    }
+
+    void setListener(LongConsumer listener) {
+        this.listener = listener;
+    }
+}
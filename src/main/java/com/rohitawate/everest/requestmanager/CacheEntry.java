@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * A response stored by the ResponseCache, along with what is needed to tell whether it is still fresh
+ * and to revalidate it once it is not.
+ * <p>
+ * Public fields are saved as the metadata of the entry on disk. The body is kept alongside, in its decoded form,
+ * by the ResponseCache.
+ */
+class CacheEntry {
+    // Headers which describe the stored body rather than the resource, and are thus not updated by a 304
+    private static final Set<String> BODY_HEADERS = new HashSet<>(Arrays.asList(
+            "content-length", "content-encoding", "transfer-encoding", "content-range"));
+
+    public String url;
+    public int statusCode;
+    public String mediaType;
+    public Map<String, List<String>> headers;
+    public long bodySize;
+
+    // When the entry was stored or last revalidated, in milliseconds since the epoch
+    public long storedAt;
+    // Age of the response when it was received, in seconds, as reported by the Age header
+    public long initialAge;
+    // Seconds for which the response is fresh after it was generated, -1 if it is always to be revalidated
+    public long freshnessLifetime = -1;
+    public String etag;
+    public String lastModified;
+
+    /**
+     * Reads the freshness lifetime and validators from the headers.
+     * <p>
+     * The body is stored decoded, so the coding headers of the network response are replaced by
+     * a Content-Length of bodySize, which must thus be set first.
+     *
+     * @return false if the response must not be stored.
+     */
+    boolean readHeaders(Map<String, List<String>> headers, long now) {
+        this.headers = new LinkedHashMap<>(headers);
+        this.headers.keySet().removeIf(name -> name.equalsIgnoreCase(HttpHeaders.CONTENT_ENCODING)
+                || name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) || name.equalsIgnoreCase("Transfer-Encoding"));
+        this.headers.put(HttpHeaders.CONTENT_LENGTH, Collections.singletonList(Long.toString(bodySize)));
+        this.storedAt = now;
+
+        Set<String> cacheControl = getDirectives(getHeader(HttpHeaders.CACHE_CONTROL));
+        if (cacheControl.contains("no-store"))
+            return false;
+
+        // Only the encodings sent by every request vary, so any other Vary would need a cache key per variant.
+        String vary = getHeader(HttpHeaders.VARY);
+        if (vary != null && !vary.trim().equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING))
+            return false;
+
+        etag = getHeader(HttpHeaders.ETAG);
+        lastModified = getHeader(HttpHeaders.LAST_MODIFIED);
+        initialAge = parseSeconds(getHeader("Age"), 0);
+
+        freshnessLifetime = -1;
+        if (!cacheControl.contains("no-cache")) {
+            long maxAge = getDirectiveValue(cacheControl, "max-age");
+            if (maxAge >= 0)
+                freshnessLifetime = maxAge;
+            else
+                freshnessLifetime = getExpiresLifetime();
+        }
+
+        // Neither fresh for any time nor revalidatable
+        return freshnessLifetime > 0 || hasValidators();
+    }
+
+    /**
+     * Takes on the headers of a 304 response which revalidated this entry.
+     */
+    void refresh(MultivaluedMap<String, String> notModifiedHeaders, long now) {
+        Map<String, List<String>> merged = new LinkedHashMap<>(headers);
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+            if (BODY_HEADERS.contains(header.getKey().toLowerCase()))
+                continue;
+
+            merged.keySet().removeIf(name -> name.equalsIgnoreCase(header.getKey()));
+            merged.put(header.getKey(), header.getValue());
+        }
+
+        String previousEtag = etag, previousLastModified = lastModified;
+        readHeaders(merged, now);
+
+        // A 304 need not repeat the validators.
+        if (etag == null)
+            etag = previousEtag;
+        if (lastModified == null)
+            lastModified = previousLastModified;
+    }
+
+    boolean isFresh(long now) {
+        long age = initialAge + (now - storedAt) / 1000;
+        return freshnessLifetime > 0 && age < freshnessLifetime;
+    }
+
+    boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * @return The headers which make a request conditional on this entry having changed.
+     */
+    Map<String, String> getConditionalHeaders() {
+        Map<String, String> conditionalHeaders = new HashMap<>();
+        if (etag != null)
+            conditionalHeaders.put(HttpHeaders.IF_NONE_MATCH, etag);
+        if (lastModified != null)
+            conditionalHeaders.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+
+        return conditionalHeaders;
+    }
+
+    /**
+     * @return Seconds from Date till Expires, 0 if Expires is in the past or invalid, or -1 if there is none.
+     */
+    private long getExpiresLifetime() {
+        String expires = getHeader(HttpHeaders.EXPIRES);
+        if (expires == null)
+            return -1;
+
+        try {
+            ZonedDateTime expiry = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME);
+            String date = getHeader(HttpHeaders.DATE);
+            long dateSeconds = date == null ? storedAt / 1000
+                    : ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+
+            return Math.max(expiry.toEpochSecond() - dateSeconds, 0);
+        } catch (DateTimeParseException e) {
+            // Invalid dates mean that the response has already expired.
+            return 0;
+        }
+    }
+
+    /**
+     * @return The values of the header joined with commas, or null if it is absent.
+     */
+    String getHeader(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty())
+                return String.join(", ", header.getValue());
+        }
+
+        return null;
+    }
+
+    /**
+     * Splits a Cache-Control header into its lower-cased directives, such as "no-cache" and "max-age=60".
+     */
+    static Set<String> getDirectives(String cacheControl) {
+        Set<String> directives = new HashSet<>();
+        if (cacheControl == null)
+            return directives;
+
+        for (String directive : cacheControl.split(","))
+            directives.add(directive.trim().toLowerCase().replace(" ", ""));
+
+        return directives;
+    }
+
+    /**
+     * @return The number of seconds in a directive such as "max-age=60", or -1 if it is absent.
+     */
+    static long getDirectiveValue(Set<String> directives, String name) {
+        for (String directive : directives) {
+            if (directive.startsWith(name + "="))
+                return parseSeconds(directive.substring(name.length() + 1).replace("\"", ""), -1);
+        }
+
+        return -1;
+    }
+
+    private static long parseSeconds(String seconds, long fallback) {
+        if (seconds == null)
+            return fallback;
+
+        try {
+            return Math.max(Long.parseLong(seconds.trim()), 0);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
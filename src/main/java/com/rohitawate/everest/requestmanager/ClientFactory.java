@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.logging.LoggingService;
+import com.rohitawate.everest.settings.Settings;
+import org.apache.http.client.config.RequestConfig;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.time.LocalDateTime;
+
+/**
+ * Builds the JAX-RS Client shared by all the RequestManagers.
+ * <p>
+ * The connector used by Jersey is selected through Settings.connector:
+ * <ul>
+ * <li>"Apache" (default) uses Apache HttpClient with a shared ConnectionPool, which keeps connections
+ * alive across requests and limits the connections opened to every route.</li>
+ * <li>"HttpURLConnection" uses the JDK's HttpURLConnection, whose connection re-use can only be
+ * tuned through the http.keepAlive and http.maxConnections system properties.</li>
+ * <li>"OkHttp" uses OkHttp, which speaks HTTP/2 and multiplexes concurrent requests to the same origin
+ * over a single connection. See OkHttpConnectorProvider.</li>
+ * </ul>
+ */
+public class ClientFactory {
+    public static final String APACHE = "Apache";
+    public static final String HTTP_URL_CONNECTION = "HttpURLConnection";
+    public static final String OK_HTTP = "OkHttp";
+
+    private static ConnectionPool connectionPool;
+    private static OkHttpConnectorProvider okHttpConnectorProvider;
+
+    static Client createClient() {
+        ClientConfig config = new ClientConfig();
+        config.register(MultiPartFeature.class);
+        config.register(ByteCountingFilter.class);
+        config.register(FileUploadWriter.class);
+
+        switch (Settings.connector) {
+            case HTTP_URL_CONNECTION:
+                config.connectorProvider(new HttpUrlConnectorProvider());
+                // Required for making PATCH requests through HttpURLConnection
+                config.property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true);
+                break;
+            case OK_HTTP:
+                okHttpConnectorProvider = new OkHttpConnectorProvider(Settings.maxConnections,
+                        Settings.connectionIdleTimeOut, Settings.http2PriorKnowledge);
+                config.connectorProvider(okHttpConnectorProvider);
+                break;
+            default:
+                if (!Settings.connector.equals(APACHE))
+                    LoggingService.logWarning("Unknown connector: " + Settings.connector + ". Using "
+                            + APACHE + " instead.", null, LocalDateTime.now());
+
+                connectionPool = new ConnectionPool(Settings.maxConnections,
+                        Settings.maxConnectionsPerRoute, Settings.connectionIdleTimeOut);
+
+                // Closes the pooled connections on exit, as the LoggingService flushes its logs
+                Runtime.getRuntime().addShutdownHook(
+                        new Thread(connectionPool::shutdown, "Everest connection pool closer"));
+
+                config.connectorProvider(new ApacheConnectorProvider());
+                config.property(ApacheClientProperties.CONNECTION_MANAGER, connectionPool.getManager());
+                config.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+
+                // Leaves content-encoding to Everest so that both connectors behave alike
+                config.property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom()
+                        .setContentCompressionEnabled(false)
+                        .build());
+        }
+
+        if (Settings.connectionTimeOutEnable)
+            config.property(ClientProperties.CONNECT_TIMEOUT, Settings.connectionTimeOut);
+        if (Settings.connectionReadTimeOutEnable)
+            config.property(ClientProperties.READ_TIMEOUT, Settings.connectionReadTimeOut);
+
+        return ClientBuilder.newClient(config);
+    }
+
+    /**
+     * @return true if the selected connector reports the DNS, connect and TLS phases of requests.
+     */
+    static boolean tracesConnections() {
+        return connectionPool != null || okHttpConnectorProvider != null;
+    }
+
+    /**
+     * @return Statistics of the connection pool, if the selected connector maintains one.
+     */
+    public static String getConnectionPoolStats() {
+        if (okHttpConnectorProvider != null)
+            return okHttpConnectorProvider.getStats();
+
+        if (connectionPool == null)
+            return "Connections are pooled by " + HTTP_URL_CONNECTION + ".";
+
+        return connectionPool.getStats();
+    }
+}
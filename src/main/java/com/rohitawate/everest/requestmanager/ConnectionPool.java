@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the PoolingHttpClientConnectionManager shared by all requests made through the Apache connector.
+ * <p>
+ * Connections are kept alive and re-used across requests to the same route (scheme, host and port),
+ * so that repeated requests do not pay for a TCP and TLS handshake every time.
+ * A background reaper evicts connections which were closed by the server or have been idle
+ * for longer than the configured time-out.
+ * <p>
+ * Host name resolution and socket creation are instrumented to report the DNS, connect
+ * and TLS phases of new connections to the RequestTrace of the calling thread.
+ */
+class ConnectionPool {
+    // Connections idle for longer than this are re-validated before being leased
+    private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+
+    private final PoolingHttpClientConnectionManager manager;
+    private final ScheduledExecutorService reaper;
+
+    ConnectionPool(int maxConnections, int maxConnectionsPerRoute, long idleTimeOut) {
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new TimedPlainSocketFactory())
+                .register("https", new TimedSSLSocketFactory())
+                .build();
+
+        manager = new PoolingHttpClientConnectionManager(socketFactories, new TimedDnsResolver());
+        manager.setMaxTotal(maxConnections);
+        manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Connection reaper thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long reapInterval = Math.max(idleTimeOut / 2, 1000);
+        reaper.scheduleWithFixedDelay(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleTimeOut, TimeUnit.MILLISECONDS);
+        }, reapInterval, reapInterval, TimeUnit.MILLISECONDS);
+    }
+
+    PoolingHttpClientConnectionManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns a human-readable summary of the pool followed by a line for every route.
+     * For example:
+     * <pre>
+     * Connections: 1 leased, 3 idle, 0 pending (max 50)
+     * https://api.github.com:443 - 1 leased, 2 idle
+     * </pre>
+     */
+    String getStats() {
+        PoolStats total = manager.getTotalStats();
+        StringBuilder builder = new StringBuilder();
+        builder.append("Connections: ")
+                .append(total.getLeased()).append(" leased, ")
+                .append(total.getAvailable()).append(" idle, ")
+                .append(total.getPending()).append(" pending (max ")
+                .append(total.getMax()).append(")");
+
+        for (HttpRoute route : manager.getRoutes()) {
+            PoolStats stats = manager.getStats(route);
+            builder.append("\n")
+                    .append(route.getTargetHost().toURI())
+                    .append(" - ")
+                    .append(stats.getLeased()).append(" leased, ")
+                    .append(stats.getAvailable()).append(" idle");
+        }
+
+        return builder.toString();
+    }
+
+    void shutdown() {
+        reaper.shutdownNow();
+        manager.shutdown();
+    }
+
+    private static class TimedDnsResolver implements DnsResolver {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long startTime = System.nanoTime();
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                RequestTrace.addDnsTime(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    private static class TimedPlainSocketFactory extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                                    InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                    HttpContext context) throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                RequestTrace.addConnectTime(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * connectSocket() opens the TCP connection and then performs the TLS handshake through createLayeredSocket().
+     * The time spent in the latter is moved from the connect phase to the TLS phase.
+     */
+    private static class TimedSSLSocketFactory extends SSLConnectionSocketFactory {
+        private TimedSSLSocketFactory() {
+            super(SSLContexts.createDefault(), SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                                    InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                    HttpContext context) throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            } finally {
+                RequestTrace.addConnectTime(System.nanoTime() - startTime);
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            long startTime = System.nanoTime();
+            try {
+                return super.createLayeredSocket(socket, target, port, context);
+            } finally {
+                long handshakeTime = System.nanoTime() - startTime;
+                RequestTrace.addTlsTime(handshakeTime);
+                RequestTrace.addConnectTime(-handshakeTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes the content-codings of response bodies as they are streamed in.
+ * <p>
+ * Supports gzip, deflate and brotli (br). Everest advertises the codings listed in Settings.acceptEncoding,
+ * since both connectors are configured to leave the body as it was received.
+ */
+class ContentDecoding {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return true if the body has been encoded, and with codings which can all be decoded.
+     */
+    static boolean isDecodable(String contentEncoding) {
+        if (contentEncoding == null)
+            return false;
+
+        boolean encoded = false;
+        for (String coding : contentEncoding.split(",")) {
+            switch (coding.trim().toLowerCase()) {
+                case "gzip":
+                case "x-gzip":
+                case "deflate":
+                case "br":
+                    encoded = true;
+                    break;
+                case "identity":
+                case "":
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        return encoded;
+    }
+
+    /**
+     * Wraps the stream in decoders for the codings, which must be decodable.
+     * The codings are undone in the reverse of the order in which they are listed, which is the order they were applied in.
+     */
+    static InputStream decode(InputStream stream, String contentEncoding) throws IOException {
+        String[] codings = contentEncoding.split(",");
+
+        for (int i = codings.length - 1; i >= 0; i--) {
+            switch (codings[i].trim().toLowerCase()) {
+                case "gzip":
+                case "x-gzip":
+                    stream = new GZIPInputStream(stream, BUFFER_SIZE);
+                    break;
+                case "deflate":
+                    stream = inflate(stream);
+                    break;
+                case "br":
+                    stream = new BrotliInputStream(stream, BUFFER_SIZE);
+                    break;
+            }
+        }
+
+        return stream;
+    }
+
+    /**
+     * 'deflate' is meant to be zlib-wrapped, but some servers send raw deflate data instead.
+     * The zlib header is told apart by its compression method, 8, and its checksum.
+     */
+    private static InputStream inflate(InputStream stream) throws IOException {
+        PushbackInputStream pushbackStream = new PushbackInputStream(stream, 2);
+        byte[] header = new byte[2];
+
+        int read = 0;
+        while (read < header.length) {
+            int count = pushbackStream.read(header, read, header.length - read);
+            if (count == -1)
+                break;
+            read += count;
+        }
+        pushbackStream.unread(header, 0, read);
+
+        int cmf = header[0] & 0xFF, flg = header[1] & 0xFF;
+        boolean zlibWrapped = read == 2 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+
+        Inflater inflater = new Inflater(!zlibWrapped);
+        return new InflaterInputStream(pushbackStream, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // Inflaters passed in are not ended by the stream itself.
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
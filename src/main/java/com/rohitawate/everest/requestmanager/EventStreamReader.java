@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.settings.Settings;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the body of a streaming response into events as it arrives, each of which is returned as soon as it is
+ * complete, rather than once the server closes the connection.
+ * <p>
+ * text/event-stream bodies are parsed as Server-Sent Events, which are shown as their data lines, prefixed with
+ * the type of the event, if other than "message", and its ID. Every other streaming body is taken to have one event
+ * per line, as newline-delimited JSON does.
+ */
+class EventStreamReader implements Closeable {
+    private static final String EVENT_STREAM = "text/event-stream";
+    private static final Set<String> LINE_DELIMITED_TYPES = new HashSet<>(Arrays.asList(
+            "application/x-ndjson", "application/ndjson", "application/jsonl",
+            "application/json-seq", "application/stream+json"));
+
+    private final BufferedReader reader;
+    private final boolean serverSentEvents;
+
+    EventStreamReader(InputStream stream, Charset charset, boolean serverSentEvents) {
+        this.reader = new BufferedReader(new InputStreamReader(stream, charset));
+        this.serverSentEvents = serverSentEvents;
+    }
+
+    /**
+     * @return true if the response is to be shown event by event as it arrives.
+     * Chunked text responses of other types are streamed too, if Settings.streamChunkedResponses is set.
+     */
+    static boolean isStreaming(Response response) {
+        MediaType mediaType = response.getMediaType();
+        if (!response.hasEntity() || response.getStatus() / 100 != 2 || mediaType == null)
+            return false;
+
+        String type = (mediaType.getType() + "/" + mediaType.getSubtype()).toLowerCase();
+        if (type.equals(EVENT_STREAM) || LINE_DELIMITED_TYPES.contains(type))
+            return true;
+
+        String transferEncoding = response.getHeaderString("Transfer-Encoding");
+        return Settings.streamChunkedResponses && !ResponseDownload.isBinary(mediaType)
+                && response.getHeaderString(HttpHeaders.CONTENT_LENGTH) == null
+                && transferEncoding != null && transferEncoding.toLowerCase().contains("chunked");
+    }
+
+    static boolean isServerSentEvents(MediaType mediaType) {
+        return mediaType != null && EVENT_STREAM.equalsIgnoreCase(mediaType.getType() + "/" + mediaType.getSubtype());
+    }
+
+    /**
+     * Blocks until the next event is complete.
+     *
+     * @return The lines to show for the event, or null once the stream has ended.
+     */
+    List<String> readEvent() throws IOException {
+        return serverSentEvents ? readServerSentEvent() : readLine();
+    }
+
+    private List<String> readLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && line.isEmpty());
+
+        return line == null ? null : Collections.singletonList(line);
+    }
+
+    /**
+     * Parses the fields of an event up to the blank line which dispatches it. Comments (often sent as keep-alives),
+     * retry fields and events without data are skipped, as are incomplete events at the end of the stream.
+     */
+    private List<String> readServerSentEvent() throws IOException {
+        String type = null;
+        String id = null;
+        List<String> data = new ArrayList<>();
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.isEmpty()) {
+                    type = null;
+                    id = null;
+                    continue;
+                }
+
+                String prefix = (type == null || type.equals("message") ? "" : type + " ")
+                        + (id == null ? "" : "#" + id + " ");
+                if (!prefix.isEmpty())
+                    data.set(0, prefix + data.get(0));
+
+                return data;
+            }
+
+            if (line.startsWith(":"))
+                continue;
+
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" "))
+                value = value.substring(1);
+
+            switch (field) {
+                case "event":
+                    type = value;
+                    break;
+                case "data":
+                    data.add(value);
+                    break;
+                case "id":
+                    id = value;
+                    break;
+                default:
+                    // retry and unknown fields
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
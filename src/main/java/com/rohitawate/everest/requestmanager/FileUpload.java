@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import java.io.File;
+
+/**
+ * A file to be sent as a request body, or as a part of one, by the FileUploadWriter.
+ */
+class FileUpload {
+    private final File file;
+    private final UploadProgress progress;
+
+    /**
+     * @param progress Reports the bytes of the file as they are sent. May be null.
+     */
+    FileUpload(File file, UploadProgress progress) {
+        this.file = file;
+        this.progress = progress;
+
+        if (progress != null)
+            progress.addFile(file.length());
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    UploadProgress getProgress() {
+        return progress;
+    }
+}
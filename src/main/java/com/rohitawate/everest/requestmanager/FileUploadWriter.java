@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes FileUploads into request bodies, for octet-stream bodies and multipart file parts alike.
+ * <p>
+ * Jersey's own File and InputStream providers copy the file through 8 KB heap buffers, a read call at a time.
+ * Instead, the file is read through a FileChannel in large blocks, which cuts the number of
+ * read and write calls per upload by a factor of 32.
+ * <p>
+ * Jersey's connectors only hand writers an OutputStream, so the bytes cannot be transferred straight
+ * from the file to the socket with FileChannel.transferTo().
+ */
+class FileUploadWriter implements MessageBodyWriter<FileUpload> {
+    // Bytes handed to the connector at a time, and thus the granularity of the UploadProgress
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return FileUpload.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(FileUpload upload, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException, WebApplicationException {
+        UploadProgress progress = upload.getProgress();
+
+        try (FileChannel channel = FileChannel.open(upload.getFile().toPath(), StandardOpenOption.READ)) {
+            byte[] block = new byte[(int) Math.min(BLOCK_SIZE, Math.max(channel.size(), 1))];
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+
+            int count;
+            while ((count = channel.read(buffer)) != -1) {
+                entityStream.write(block, 0, count);
+                buffer.clear();
+
+                if (progress != null)
+                    progress.addSent(count);
+            }
+        }
+    }
+}
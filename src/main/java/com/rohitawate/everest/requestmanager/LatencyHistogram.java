@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+/**
+ * A fixed-size, log-linear histogram of non-negative values, modelled after HdrHistogram.
+ * <p>
+ * Values below 128 are counted exactly. Larger values are grouped into buckets whose width doubles
+ * with every power of two, with 64 buckets per power of two. Thus, every recorded value is off by
+ * at most 1/64 (~1.6%), the histogram occupies a constant ~30 KB regardless of the number of
+ * values recorded, and recording a value costs a couple of bit operations.
+ * <p>
+ * A histogram is not thread-safe. Concurrent recorders should use one histogram each
+ * and combine them with add().
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    // Values up to Long.MAX_VALUE need shifts up to 63 - (SUB_BUCKET_BITS - 1)
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    public void record(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Histogram values cannot be negative: " + value);
+
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+
+        if (value < min)
+            min = value;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * Adds all the values recorded by the other histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            counts[i] += other.counts[i];
+
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values fall.
+     * The returned value is the upper bound of the bucket containing the percentile, capped at the maximum.
+     *
+     * @param percentile Percentile between 0 and 100.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0)
+            return 0;
+
+        long target = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * totalCount);
+        target = Math.max(target, 1);
+
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target)
+                return Math.min(highestValueIn(i), max);
+        }
+
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - (SUB_BUCKET_BITS - 1);
+
+        // Lies in [HALF_SUB_BUCKET_COUNT, SUB_BUCKET_COUNT)
+        int subBucket = (int) (value >>> shift);
+
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (subBucket - HALF_SUB_BUCKET_COUNT);
+    }
+
+    static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = offset % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+
+        long upperBound = ((subBucket + 1) << shift) - 1;
+
+        // The last bucket would otherwise overflow past Long.MAX_VALUE
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.models.requests.EverestRequest;
+import javafx.concurrent.Task;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Replays a single EverestRequest a fixed number of times from a fixed number of concurrent workers
+ * and summarizes the results in a LoadTestReport.
+ * <p>
+ * Unlike the RequestManager, the LoadTest only cares about timing, status codes and sizes.
+ * Response bodies are drained into a small per-worker buffer and counted, but never stored or decoded.
+ * Every worker records latencies into its own LatencyHistogram, which are merged once all workers finish,
+ * so that workers never contend with each other while the test is running.
+ * <p>
+ * The workers run on a dedicated pool rather than the RequestDispatcher so that a running
+ * load test does not starve regular requests. Since every worker is a thread of its own, the concurrency
+ * is limited to MAX_CONCURRENCY. Note that with the Apache connector, the number of
+ * requests in flight to a single host is also capped by Settings.maxConnectionsPerRoute.
+ */
+public class LoadTest extends Task<LoadTestReport> {
+    public static final int MAX_CONCURRENCY = 256;
+
+    private static final int DRAIN_BUFFER_SIZE = 16 * 1024;
+
+    private final EverestRequest request;
+    private final int iterations;
+    private final int concurrency;
+
+    public LoadTest(EverestRequest request, int iterations, int concurrency) {
+        if (iterations < 1 || concurrency < 1)
+            throw new IllegalArgumentException("Iterations and concurrency must be positive.");
+        if (concurrency > MAX_CONCURRENCY)
+            throw new IllegalArgumentException("Concurrency must not exceed " + MAX_CONCURRENCY + ".");
+
+        this.request = request;
+        this.iterations = iterations;
+        this.concurrency = Math.min(concurrency, iterations);
+    }
+
+    @Override
+    protected LoadTestReport call() throws Exception {
+        return run(completed -> updateProgress(completed, iterations));
+    }
+
+    /**
+     * Runs the load test on the calling thread, blocking until all the iterations are done or the test is cancelled.
+     *
+     * @param progressListener Receives the number of iterations completed so far.
+     */
+    LoadTestReport run(LongConsumer progressListener) throws Exception {
+        // Fails early if the request cannot even be built, for example, due to a missing file.
+        RequestManager.buildInvocation(request);
+
+        AtomicInteger issued = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+
+        List<Callable<Worker>> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(() -> {
+                Worker worker = new Worker();
+                while (!isCancelled() && issued.getAndIncrement() < iterations) {
+                    worker.execute();
+                    progressListener.accept(completed.incrementAndGet());
+                }
+                return worker;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Everest load test thread " + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        LoadTestReport report = new LoadTestReport(iterations, concurrency);
+        try {
+            long startTime = System.nanoTime();
+            List<Future<Worker>> results = executor.invokeAll(workers);
+            report.setElapsedTime(System.nanoTime() - startTime);
+
+            for (Future<Worker> result : results)
+                result.get().addTo(report);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return report;
+    }
+
+    /**
+     * Executes iterations on one thread and accumulates their results.
+     */
+    private class Worker {
+        private final byte[] drainBuffer = new byte[DRAIN_BUFFER_SIZE];
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final Map<Integer, Integer> statusCounts = new HashMap<>();
+        private long bytesReceived;
+        private int failures;
+        private String lastFailure;
+
+        private void execute() {
+            Response response = null;
+
+            try {
+                long startTime = System.nanoTime();
+                response = RequestManager.buildInvocation(request).invoke();
+                long size = drain(response);
+                histogram.record((System.nanoTime() - startTime) / 1000);
+
+                bytesReceived += size;
+                statusCounts.merge(response.getStatus(), 1, Integer::sum);
+            } catch (Exception e) {
+                failures++;
+                lastFailure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            } finally {
+                if (response != null)
+                    response.close();
+            }
+        }
+
+        private long drain(Response response) throws IOException {
+            if (!response.hasEntity())
+                return 0;
+
+            long size = 0;
+            try (InputStream stream = response.readEntity(InputStream.class)) {
+                int count;
+                while ((count = stream.read(drainBuffer)) != -1)
+                    size += count;
+            }
+
+            return size;
+        }
+
+        private void addTo(LoadTestReport report) {
+            report.addResults(histogram, statusCounts, bytesReceived, failures, lastFailure);
+        }
+    }
+}
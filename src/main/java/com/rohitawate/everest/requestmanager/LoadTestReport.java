@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of a LoadTest: throughput, latency percentiles, status codes and error rate.
+ * Latencies are measured in microseconds and reported in milliseconds.
+ * <p>
+ * An iteration counts as an error if the request failed altogether (for example, if the connection was refused)
+ * or if the server responded with a status code of 400 or above.
+ */
+public class LoadTestReport {
+    private final int iterations;
+    private final int concurrency;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final TreeMap<Integer, Integer> statusCounts = new TreeMap<>();
+    private long bytesReceived;
+    private int failures;
+    private String lastFailure;
+    private long elapsedTime;
+
+    LoadTestReport(int iterations, int concurrency) {
+        this.iterations = iterations;
+        this.concurrency = concurrency;
+    }
+
+    void addResults(LatencyHistogram histogram, Map<Integer, Integer> statusCounts,
+                    long bytesReceived, int failures, String lastFailure) {
+        this.histogram.add(histogram);
+        statusCounts.forEach((status, count) -> this.statusCounts.merge(status, count, Integer::sum));
+        this.bytesReceived += bytesReceived;
+        this.failures += failures;
+
+        if (lastFailure != null)
+            this.lastFailure = lastFailure;
+    }
+
+    void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * @return Number of iterations that were attempted, successful or not.
+     */
+    public int getCompleted() {
+        return (int) histogram.getTotalCount() + failures;
+    }
+
+    /**
+     * @return Number of iterations which received a response from the server.
+     */
+    public int getResponses() {
+        return (int) histogram.getTotalCount();
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public int getErrors() {
+        int errors = failures;
+        for (Map.Entry<Integer, Integer> entry : statusCounts.tailMap(400).entrySet())
+            errors += entry.getValue();
+
+        return errors;
+    }
+
+    /**
+     * @return Fraction of iterations which resulted in an error, between 0 and 1.
+     */
+    public double getErrorRate() {
+        int completed = getCompleted();
+        return completed == 0 ? 0 : (double) getErrors() / completed;
+    }
+
+    /**
+     * @return Number of completed iterations per second.
+     */
+    public double getThroughput() {
+        return elapsedTime == 0 ? 0 : getCompleted() / (elapsedTime / 1_000_000_000.0);
+    }
+
+    /**
+     * @return Latency at the given percentile, in milliseconds.
+     */
+    public double getLatency(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double getMaxLatency() {
+        return histogram.getMax() / 1000.0;
+    }
+
+    public double getMeanLatency() {
+        return histogram.getMean() / 1000.0;
+    }
+
+    public Map<Integer, Integer> getStatusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * @return The status code returned most often, or 0 if no responses were received.
+     */
+    public int getMostFrequentStatus() {
+        int status = 0, maxCount = 0;
+        for (Map.Entry<Integer, Integer> entry : statusCounts.entrySet()) {
+            if (entry.getValue() > maxCount) {
+                status = entry.getKey();
+                maxCount = entry.getValue();
+            }
+        }
+
+        return status;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return Average size of a response body in bytes.
+     */
+    public long getAverageSize() {
+        return histogram.getTotalCount() == 0 ? 0 : bytesReceived / histogram.getTotalCount();
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Iterations:   %d of %d (concurrency %d)%n", getCompleted(), iterations, concurrency));
+        builder.append(String.format("Duration:     %.2f s%n", elapsedTime / 1_000_000_000.0));
+        builder.append(String.format("Throughput:   %.2f requests/s%n", getThroughput()));
+        builder.append(String.format("Error rate:   %.2f %% (%d errors, %d failed to connect)%n",
+                getErrorRate() * 100, getErrors(), failures));
+        builder.append(String.format("Received:     %d B (%d B per response)%n%n", bytesReceived, getAverageSize()));
+
+        builder.append("Latency\n");
+        builder.append(String.format("  mean        %.2f ms%n", getMeanLatency()));
+        builder.append(String.format("  p50         %.2f ms%n", getLatency(50)));
+        builder.append(String.format("  p90         %.2f ms%n", getLatency(90)));
+        builder.append(String.format("  p99         %.2f ms%n", getLatency(99)));
+        builder.append(String.format("  max         %.2f ms%n%n", getMaxLatency()));
+
+        builder.append("Status codes\n");
+        statusCounts.forEach((status, count) -> builder.append(String.format("  %d         %d%n", status, count)));
+
+        if (lastFailure != null)
+            builder.append(String.format("%nLast failure: %s%n", lastFailure));
+
+        return builder.toString();
+    }
+}
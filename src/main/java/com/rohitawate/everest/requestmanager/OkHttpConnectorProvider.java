@@ -0,0 +1,368 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.models.requests.HTTPConstants;
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+import org.glassfish.jersey.media.multipart.BodyPart;
+import org.glassfish.jersey.media.multipart.Boundary;
+import org.glassfish.jersey.media.multipart.MultiPart;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides a Jersey connector backed by OkHttp, which speaks HTTP/2 as well as HTTP/1.1.
+ * <p>
+ * HTTP/2 is negotiated through ALPN for https:// URLs, which needs Java 8u252 or later, falling back to HTTP/1.1
+ * for servers that do not support it. With Settings.http2PriorKnowledge, http:// URLs are requested over cleartext
+ * HTTP/2 (h2c) straight away, without an upgrade, which suits local test servers.
+ * <p>
+ * All requests share one pool of connections, so concurrent requests to the same HTTP/2 origin are multiplexed
+ * as streams over a single connection rather than each opening their own.
+ * <p>
+ * As with the Apache connector, new connections report their DNS, connect and TLS phases to the RequestTrace
+ * of the calling thread, through an OkHttp EventListener. The negotiated protocol is reported likewise.
+ */
+class OkHttpConnectorProvider implements ConnectorProvider {
+    private final okhttp3.ConnectionPool connectionPool;
+    private final boolean http2PriorKnowledge;
+
+    OkHttpConnectorProvider(int maxIdleConnections, long idleTimeOut, boolean http2PriorKnowledge) {
+        this.connectionPool = new okhttp3.ConnectionPool(maxIdleConnections, idleTimeOut, TimeUnit.MILLISECONDS);
+        this.http2PriorKnowledge = http2PriorKnowledge;
+    }
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        Map<String, Object> properties = runtimeConfig.getProperties();
+        int connectTimeOut = ClientProperties.getValue(properties, ClientProperties.CONNECT_TIMEOUT, 0);
+        int readTimeOut = ClientProperties.getValue(properties, ClientProperties.READ_TIMEOUT, 0);
+        boolean followRedirects = ClientProperties.getValue(properties, ClientProperties.FOLLOW_REDIRECTS, true);
+
+        // Time-outs of 0 mean no time-out to both Jersey and OkHttp.
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .connectTimeout(connectTimeOut, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeOut, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeOut, TimeUnit.MILLISECONDS)
+                .followRedirects(followRedirects)
+                .followSslRedirects(followRedirects)
+                .eventListenerFactory(call -> new TracingEventListener())
+                .build();
+
+        return new OkHttpConnector(okHttpClient);
+    }
+
+    /**
+     * Returns a human-readable summary of the pool. For example:
+     * <pre>
+     * Connections: 4 open, 3 idle
+     * </pre>
+     * A single HTTP/2 connection may be carrying any number of requests.
+     */
+    String getStats() {
+        return "Connections: " + connectionPool.connectionCount() + " open, "
+                + connectionPool.idleConnectionCount() + " idle";
+    }
+
+    /**
+     * @return The protocol as it is usually written, such as "HTTP/2".
+     */
+    static String describe(Protocol protocol) {
+        switch (protocol) {
+            case HTTP_2:
+                return "HTTP/2";
+            case H2_PRIOR_KNOWLEDGE:
+                return "HTTP/2 (h2c)";
+            default:
+                return protocol.toString().toUpperCase();
+        }
+    }
+
+    private class OkHttpConnector implements Connector {
+        private final OkHttpClient okHttpClient;
+        // Shares the connection pool of okHttpClient, but only speaks cleartext HTTP/2
+        private final OkHttpClient h2cClient;
+
+        private OkHttpConnector(OkHttpClient okHttpClient) {
+            this.okHttpClient = okHttpClient;
+            this.h2cClient = okHttpClient.newBuilder()
+                    .protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE))
+                    .build();
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            boolean cleartext = "http".equalsIgnoreCase(request.getUri().getScheme());
+            OkHttpClient client = http2PriorKnowledge && cleartext ? h2cClient : okHttpClient;
+
+            Response response;
+            try {
+                response = client.newCall(toOkHttpRequest(request)).execute();
+            } catch (IOException e) {
+                throw new ProcessingException(e.getMessage(), e);
+            }
+
+            RequestTrace.setProtocol(describe(response.protocol()));
+
+            ClientResponse clientResponse = new ClientResponse(response.message().isEmpty()
+                    ? Statuses.from(response.code()) : Statuses.from(response.code(), response.message()), request);
+
+            Headers headers = response.headers();
+            for (int i = 0; i < headers.size(); i++)
+                clientResponse.getHeaders().add(headers.name(i), headers.value(i));
+
+            // Closing the entity stream releases the connection, or the HTTP/2 stream, back to OkHttp.
+            clientResponse.setEntityStream(response.body().byteStream());
+            return clientResponse;
+        }
+
+        private Request toOkHttpRequest(ClientRequest request) throws IOException {
+            String contentType = request.getHeaderString(HttpHeaders.CONTENT_TYPE);
+
+            /*
+                OkHttp sends the headers before the body is written, so the boundary which Jersey would otherwise
+                add to the Content-Type while writing a multipart body is added up front.
+             */
+            if (request.hasEntity() && request.getMediaType() != null
+                    && request.getMediaType().getType().equalsIgnoreCase("multipart")) {
+                contentType = Boundary.addBoundary(request.getMediaType()).toString();
+                request.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, contentType);
+            }
+
+            Request.Builder builder = new Request.Builder().url(request.getUri().toString());
+            for (Map.Entry<String, List<String>> header : request.getStringHeaders().entrySet()) {
+                for (String value : header.getValue())
+                    builder.addHeader(header.getKey(), value);
+            }
+
+            // Leaves content-encoding to Everest, since OkHttp would otherwise ask for gzip and decode it transparently.
+            if (request.getHeaderString(HttpHeaders.ACCEPT_ENCODING) == null)
+                builder.header(HttpHeaders.ACCEPT_ENCODING, "identity");
+
+            RequestBody body = null;
+            MediaType mediaType = contentType == null ? null : MediaType.parse(contentType);
+            if (request.hasEntity())
+                body = createBody(request, mediaType);
+            else if (requiresBody(request.getMethod()))
+                body = RequestBody.create(mediaType, new byte[0]);
+
+            return builder.method(request.getMethod(), body).build();
+        }
+
+        /**
+         * Bodies which are already in memory, such as raw text and URL-encoded forms, are written out up front
+         * so that they are sent with a Content-Length rather than chunked. Bodies with files in them are streamed,
+         * since the files may be of any size. A lone file is still sent with its length.
+         */
+        private RequestBody createBody(ClientRequest request, MediaType mediaType) throws IOException {
+            Object entity = request.getEntity();
+
+            if (entity instanceof FileUpload)
+                return new EntityBody(request, mediaType, ((FileUpload) entity).getFile().length());
+
+            if (entity instanceof MultiPart) {
+                for (BodyPart part : ((MultiPart) entity).getBodyParts()) {
+                    if (part.getEntity() instanceof FileUpload)
+                        return new EntityBody(request, mediaType, -1);
+                }
+            }
+
+            Buffer buffer = new Buffer();
+            request.setStreamProvider(contentLength -> buffer.outputStream());
+            request.writeEntity();
+
+            return RequestBody.create(mediaType, buffer.readByteString());
+        }
+
+        /**
+         * OkHttp refuses to make POST, PUT and PATCH requests without a body, so empty ones are given an empty body.
+         */
+        private boolean requiresBody(String method) {
+            return method.equals(HTTPConstants.POST) || method.equals(HTTPConstants.PUT)
+                    || method.equals(HTTPConstants.PATCH);
+        }
+
+        /**
+         * Runs the request on the calling thread, as does Jersey's HttpUrlConnector.
+         * Everest itself only makes synchronous requests.
+         */
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            CompletableFuture<ClientResponse> future = new CompletableFuture<>();
+
+            try {
+                ClientResponse response = apply(request);
+                callback.response(response);
+                future.complete(response);
+            } catch (ProcessingException e) {
+                callback.failure(e);
+                future.completeExceptionally(e);
+            }
+
+            return future;
+        }
+
+        @Override
+        public String getName() {
+            return "OkHttp";
+        }
+
+        @Override
+        public void close() {
+            // The connection pool is shared, and outlives the connector.
+        }
+    }
+
+    /**
+     * Streams the entity of a Jersey request into OkHttp's sink, without buffering it.
+     */
+    private static class EntityBody extends RequestBody {
+        private final ClientRequest request;
+        private final MediaType mediaType;
+        private final long contentLength;
+
+        /**
+         * @param contentLength The length of the entity in bytes, or -1 if it is unknown until the entity
+         *                      has been written, in which case HTTP/1.1 bodies are chunked.
+         */
+        private EntityBody(ClientRequest request, MediaType mediaType, long contentLength) {
+            this.request = request;
+            this.mediaType = mediaType;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mediaType;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        /**
+         * The entity may be backed by a stream which can only be read once, so OkHttp must not retry with it.
+         */
+        @Override
+        public boolean isOneShot() {
+            return true;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            OutputStream sinkStream = sink.outputStream();
+
+            // OkHttp closes the sink itself once the body is written.
+            request.setStreamProvider(contentLength -> new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    sinkStream.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    sinkStream.write(bytes, offset, length);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    sinkStream.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    sinkStream.flush();
+                }
+            });
+
+            request.writeEntity();
+        }
+    }
+
+    /**
+     * Reports the phases of the connections opened for a call to the RequestTrace of the calling thread.
+     * Calls which re-use a pooled connection, or an open HTTP/2 connection, report nothing.
+     */
+    private static class TracingEventListener extends EventListener {
+        private long dnsStartTime;
+        private long connectStartTime;
+        private long tlsStartTime;
+        private long tlsTime;
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStartTime = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            RequestTrace.addDnsTime(System.nanoTime() - dnsStartTime);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStartTime = System.nanoTime();
+            tlsTime = 0;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStartTime = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsTime = System.nanoTime() - tlsStartTime;
+            RequestTrace.addTlsTime(tlsTime);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            RequestTrace.addConnectTime(System.nanoTime() - connectStartTime - tlsTime);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException e) {
+            RequestTrace.addConnectTime(System.nanoTime() - connectStartTime - tlsTime);
+        }
+    }
+}
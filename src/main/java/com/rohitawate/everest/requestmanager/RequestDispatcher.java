@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.logging.LoggingService;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Executor on which every RequestManager runs its Task.
+ * <p>
+ * Unlike JavaFX's default cached thread pool, the dispatcher runs at most 'maxConcurrentRequests' requests
+ * at a time and queues at most 'queueCapacity' more. Once the queue is full, execute() throws a
+ * RejectedExecutionException which the Dashboard reports to the user instead of spawning yet another thread.
+ * <p>
+ * Virtual threads are used when the JVM supports them, one per request, since they are cheap to create
+ * and are not meant to be pooled. A fair Semaphore then limits how many of them make their request at once,
+ * the others waiting on it in the order they were dispatched. Without virtual threads, the requests are
+ * run by a pool of platform daemon threads instead.
+ * <p>
+ * The dispatcher also records the depth of its queue and the time every request spent waiting in it.
+ */
+class RequestDispatcher implements Executor {
+    private final int maxConcurrentRequests;
+    private final int queueCapacity;
+
+    // Only one of these is used, depending on whether the JVM supports virtual threads.
+    private final ThreadPoolExecutor executor;
+    private final ThreadFactory virtualThreadFactory;
+    private final Semaphore permits;
+    // Requests dispatched to virtual threads which have not finished yet, whether running or waiting
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    private final LongAdder dispatchedRequests = new LongAdder();
+    private final LongAdder totalWaitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    RequestDispatcher(int maxConcurrentRequests, int queueCapacity, boolean preferVirtualThreads) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queueCapacity = queueCapacity;
+        this.virtualThreadFactory = preferVirtualThreads ? getVirtualThreadFactory() : null;
+
+        if (virtualThreadFactory != null) {
+            permits = new Semaphore(maxConcurrentRequests, true);
+            executor = null;
+        } else {
+            permits = null;
+            executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    new PlatformThreadFactory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        final long queuedAt = System.nanoTime();
+
+        if (executor != null) {
+            executor.execute(() -> {
+                recordWaitTime(System.nanoTime() - queuedAt);
+                task.run();
+            });
+            return;
+        }
+
+        if (pendingRequests.incrementAndGet() > maxConcurrentRequests + queueCapacity) {
+            pendingRequests.decrementAndGet();
+            throw new RejectedExecutionException("The request queue is full.");
+        }
+
+        virtualThreadFactory.newThread(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                pendingRequests.decrementAndGet();
+                return;
+            }
+
+            try {
+                recordWaitTime(System.nanoTime() - queuedAt);
+                task.run();
+            } finally {
+                permits.release();
+                pendingRequests.decrementAndGet();
+            }
+        }).start();
+    }
+
+    private void recordWaitTime(long waitTime) {
+        dispatchedRequests.increment();
+        totalWaitTime.add(waitTime);
+
+        long max;
+        do {
+            max = maxWaitTime.get();
+        } while (waitTime > max && !maxWaitTime.compareAndSet(max, waitTime));
+    }
+
+    /**
+     * @return Number of requests waiting for a free thread.
+     */
+    int getQueueDepth() {
+        if (executor != null)
+            return executor.getQueue().size();
+
+        return Math.max(pendingRequests.get() - getActiveRequests(), 0);
+    }
+
+    /**
+     * @return Number of requests currently being executed.
+     */
+    int getActiveRequests() {
+        if (executor != null)
+            return executor.getActiveCount();
+
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    /**
+     * @return Average time, in milliseconds, that requests have spent in the queue.
+     */
+    double getAverageWaitTime() {
+        long dispatched = dispatchedRequests.sum();
+        if (dispatched == 0)
+            return 0;
+
+        return totalWaitTime.sum() / (dispatched * 1_000_000.0);
+    }
+
+    /**
+     * @return Longest time, in milliseconds, that a request has spent in the queue.
+     */
+    double getMaxWaitTime() {
+        return maxWaitTime.get() / 1_000_000.0;
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Looks up Thread.ofVirtual() reflectively since Everest is compiled against Java 8.
+     *
+     * @return A factory of virtual threads, or null if the running JVM does not support them.
+     */
+    private static ThreadFactory getVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "Everest request thread ", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LoggingService.logInfo("Virtual threads unavailable. Using platform threads for requests.", LocalDateTime.now());
+            return null;
+        }
+    }
+
+    private static class PlatformThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Everest request thread " + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
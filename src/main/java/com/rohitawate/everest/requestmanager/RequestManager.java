@@ -18,33 +18,46 @@ package com.rohitawate.everest.requestmanager;
 import com.rohitawate.everest.Main;
 import com.rohitawate.everest.exceptions.NullResponseException;
 import com.rohitawate.everest.exceptions.RedirectException;
+import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.models.requests.*;
 import com.rohitawate.everest.models.responses.EverestResponse;
+import com.rohitawate.everest.models.responses.ResponseBodyStore;
+import com.rohitawate.everest.models.responses.ResponseStream;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 import com.rohitawate.everest.settings.Settings;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.concurrent.WorkerStateEvent;
 import javafx.event.EventHandler;
-import org.glassfish.jersey.client.ClientProperties;
-import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
-import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
 
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.core.Form;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * Manages all the requests made through Everest.
@@ -63,28 +76,34 @@ import java.util.Map;
  * are now replaced by this single works-for-all one to save some serious amount of memory and to facilitate better re-use.
  */
 public class RequestManager extends Service<EverestResponse> {
-    private static final Client client;
-
-    static {
-        client = ClientBuilder.newBuilder()
-                .register(MultiPartFeature.class)
-                .build();
-
-        // Required for making PATCH requests through Jersey
-        client.property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true);
-
-        if (Settings.connectionTimeOutEnable)
-            client.property(ClientProperties.CONNECT_TIMEOUT, Settings.connectionTimeOut);
-        if (Settings.connectionReadTimeOutEnable)
-            client.property(ClientProperties.READ_TIMEOUT, Settings.connectionReadTimeOut);
-    }
-
-    private long initialTime;
-    private long finalTime;
+    private static final Client client = ClientFactory.createClient();
+    // Nanoseconds between updates of the throughput of downloads to files
+    private static final long THROUGHPUT_UPDATE_INTERVAL = 100_000_000;
 
     private EverestRequest request;
     private EverestResponse response;
-    private Builder requestBuilder;
+
+    // The body of the streaming response being read, if any
+    private volatile Closeable activeStream;
+    private Consumer<EverestResponse> onStreaming;
+
+    // Whether this manager is currently in the RequestManagersPool's free-list
+    private final AtomicBoolean pooled = new AtomicBoolean(false);
+
+    RequestManager() {
+        // Responses are only published before the task ends by processStreamingResponse().
+        valueProperty().addListener((observable, oldResponse, newResponse) -> {
+            if (newResponse != null && newResponse.getStream() != null && isRunning() && onStreaming != null)
+                onStreaming.accept(newResponse);
+        });
+
+        stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED
+                    || newState == Worker.State.FAILED
+                    || newState == Worker.State.CANCELLED)
+                RequestManagersPool.release(this);
+        });
+    }
 
     /**
      * Creates a JavaFX Task for processing the required kind of request.
@@ -94,61 +113,207 @@ public class RequestManager extends Service<EverestResponse> {
         return new Task<EverestResponse>() {
             @Override
             protected EverestResponse call() throws Exception {
-                Response serverResponse = null;
+                String cacheKey = ResponseCache.getKey(request);
+                CacheEntry cachedEntry = cacheKey == null ? null : ResponseCache.lookup(cacheKey);
+                Map<String, String> conditionalHeaders = null;
+
+                if (cachedEntry != null) {
+                    if (cachedEntry.isFresh(System.currentTimeMillis()) && !ResponseCache.requiresRevalidation(request)) {
+                        response = ResponseCache.toResponse(cacheKey, cachedEntry);
+                        if (response != null) {
+                            response.setTiming(new TimingBreakdown(0, 0, 0, 0, 0));
+                            response.setCacheStatus(EverestResponse.CacheStatus.CACHE);
+                            parseJSON(response);
+                            return response;
+                        }
+                    } else if (cachedEntry.hasValidators()) {
+                        conditionalHeaders = cachedEntry.getConditionalHeaders();
+                    }
+                }
 
-                addAuthHeader();
+                // Drives the progress bar while files are uploaded, until the response starts arriving
+                UploadProgress upload = new UploadProgress(progress -> {
+                    updateMessage(progress.toString());
+                    updateProgress(progress.getSent(), progress.getTotal());
+                });
+                Invocation invocation = buildInvocation(request, conditionalHeaders, upload);
+
+                RequestTrace trace = RequestTrace.begin();
+                long startTime = System.nanoTime();
+                Response serverResponse;
+                try {
+                    serverResponse = invocation.invoke();
+                } finally {
+                    RequestTrace.end();
+                }
+                long timeToFirstByte = System.nanoTime() - startTime;
+
+                // Reports the size of the body as soon as the headers arrive, and then the progress of its download.
+                long contentLength = serverResponse == null ? -1 : serverResponse.getLength();
+                boolean streaming = serverResponse != null && EventStreamReader.isStreaming(serverResponse);
+                boolean saveToFile = !streaming && serverResponse != null && serverResponse.hasEntity()
+                        && (Settings.saveResponsesToFile || ResponseDownload.isBinary(serverResponse.getMediaType()));
+
+                if (saveToFile && trace.getWireStream() != null) {
+                    updateMessage("Saving to file");
+                    updateProgress(contentLength >= 0 ? 0 : -1, contentLength);
+
+                    // Also reports the throughput, at most every THROUGHPUT_UPDATE_INTERVAL
+                    long downloadStartTime = System.nanoTime();
+                    long[] lastUpdateTime = {downloadStartTime};
+                    trace.getWireStream().setListener(received -> {
+                        if (contentLength >= 0)
+                            updateProgress(received, contentLength);
+
+                        long now = System.nanoTime();
+                        if (now - lastUpdateTime[0] < THROUGHPUT_UPDATE_INTERVAL)
+                            return;
+
+                        lastUpdateTime[0] = now;
+                        double megabytes = received / (1024.0 * 1024.0);
+                        updateMessage(String.format("Saving to file: %.1f MB at %.1f MB/s", megabytes,
+                                megabytes * 1_000_000_000.0 / (now - downloadStartTime)));
+                    });
+                } else if (contentLength >= 0 && trace.getWireStream() != null) {
+                    updateMessage("Receiving " + contentLength + " B");
+                    updateProgress(0, contentLength);
+                    trace.getWireStream().setListener(received -> updateProgress(received, contentLength));
+                } else if (upload.getTotal() > 0) {
+                    // Clears the upload's progress, since that of the download is unknown
+                    updateMessage("");
+                    updateProgress(-1, -1);
+                }
 
-                if (request.getClass().equals(GETRequest.class)) {
-                    initialTime = System.currentTimeMillis();
-                    serverResponse = requestBuilder.get();
-                    finalTime = System.currentTimeMillis();
-                } else if (request.getClass().equals(DataRequest.class)) {
-                    DataRequest dataRequest = (DataRequest) request;
+                try {
+                    if (conditionalHeaders != null && serverResponse != null && serverResponse.getStatus() == 304) {
+                        ResponseCache.revalidated(cacheKey, cachedEntry, serverResponse.getStringHeaders());
+                        response = ResponseCache.toResponse(cacheKey, cachedEntry);
+                        if (response == null)
+                            throw new IOException("The server revalidated a cached response which could no longer be read.");
+
+                        response.setTiming(trace.toTimingBreakdown(ClientFactory.tracesConnections(), timeToFirstByte, 0));
+                        response.setCacheStatus(EverestResponse.CacheStatus.REVALIDATED);
+                        response.setProtocol(getProtocol(trace));
+                        parseJSON(response);
+                        return response;
+                    }
 
-                    Invocation invocation = appendBody(dataRequest);
-                    initialTime = System.currentTimeMillis();
-                    serverResponse = invocation.invoke();
-                    finalTime = System.currentTimeMillis();
-                } else if (request.getClass().equals(DELETERequest.class)) {
-                    initialTime = System.currentTimeMillis();
-                    serverResponse = requestBuilder.delete();
-                    finalTime = System.currentTimeMillis();
+                    if (streaming)
+                        processStreamingResponse(serverResponse, trace, timeToFirstByte, this::updateValue, this::isCancelled);
+                    else
+                        processServerResponse(serverResponse, trace, timeToFirstByte, saveToFile);
+                } finally {
+                    // Releases the connection back to the pool
+                    if (serverResponse != null)
+                        serverResponse.close();
                 }
 
-                processServerResponse(serverResponse);
+                if (cacheKey != null)
+                    ResponseCache.store(cacheKey, request.getTarget().toString(), response);
 
+                parseJSON(response);
                 return response;
             }
+
+            /**
+             * Reads of streaming responses block until the next event arrives, so the stream is also closed.
+             */
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+                Closeable stream = activeStream;
+                if (cancelled && stream != null) {
+                    // Closing the stream may block till the connection is released, so it is done off this thread.
+                    new Thread(() -> {
+                        try {
+                            stream.close();
+                        } catch (IOException e) {
+                            // The stream is being abandoned anyway.
+                        }
+                    }, "Everest stream closer").start();
+                }
+
+                return cancelled;
+            }
         };
     }
 
     public void setRequest(EverestRequest request) {
         this.request = request;
-        this.requestBuilder = client.target(request.getTarget().toString()).request();
-        appendHeaders();
     }
 
     public EverestRequest getRequest() {
         return this.request;
     }
 
-    private void addAuthHeader() {
+    /**
+     * Converts an EverestRequest into a ready-to-invoke JAX-RS Invocation.
+     * A fresh Invocation is built every time so that the same request can be replayed any number of times,
+     * as is done by the LoadTest.
+     */
+    static Invocation buildInvocation(EverestRequest request) throws Exception {
+        return buildInvocation(request, null, null);
+    }
+
+    /**
+     * @param conditionalHeaders Headers which make the request conditional on a cached response having changed,
+     *                           or null.
+     * @param upload             Tracks the upload of the files in the body, if any. May be null.
+     */
+    private static Invocation buildInvocation(EverestRequest request, Map<String, String> conditionalHeaders,
+                                              UploadProgress upload) throws Exception {
+        Builder requestBuilder = client.target(request.getTarget().toString()).request();
+
+        request.getHeaders().forEach(requestBuilder::header);
+        if (conditionalHeaders != null)
+            conditionalHeaders.forEach(requestBuilder::header);
+        requestBuilder.header("User-Agent", Main.APP_NAME);
+
+        if (!Settings.acceptEncoding.isEmpty() && !hasHeader(request, HttpHeaders.ACCEPT_ENCODING))
+            requestBuilder.header(HttpHeaders.ACCEPT_ENCODING, Settings.acceptEncoding);
+
         if (request.getAuthProvider() != null && request.getAuthProvider().isEnabled()) {
             requestBuilder.header("Authorization", request.getAuthProvider().getAuthHeader());
         }
+
+        if (request.getClass().equals(DataRequest.class))
+            return appendBody((DataRequest) request, requestBuilder, upload);
+        else if (request.getClass().equals(DELETERequest.class))
+            return requestBuilder.buildDelete();
+        else
+            return requestBuilder.buildGet();
     }
 
-    private void appendHeaders() {
-        request.getHeaders().forEach((key, value) -> requestBuilder.header(key, value));
-        requestBuilder.header("User-Agent", Main.APP_NAME);
+    private static boolean hasHeader(EverestRequest request, String name) {
+        for (String header : request.getHeaders().keySet()) {
+            if (header.equalsIgnoreCase(name))
+                return true;
+        }
+
+        return false;
     }
 
     /**
      * Takes a ServerResponse and extracts all the headers, the body, the response time and other details
      * into a EverestResponse.
+     * <p>
+     * The entity is never decoded into a String here. It is streamed into a ResponseBodyStore
+     * which keeps at most Settings.responseBodyMemoryWindow bytes on the heap.
+     * The time spent in doing so is recorded as the download phase of the request.
+     * <p>
+     * The size of the body is recorded both as received on the wire, counted by the ByteCountingFilter,
+     * and as stored, once decoded.
+     * <p>
+     * Bodies with a supported content-encoding are decoded as they are streamed into the store.
+     * Since decoding is interleaved with waiting on the network, the decode time is worked out as the time spent
+     * in reading decoded bytes less the time spent in reading bytes off the wire.
+     * <p>
+     * Bodies which are to be saved to a file are streamed into a ResponseDownload instead, leaving the response
+     * with only the file and a preview of its first bytes.
      */
-    private void processServerResponse(Response serverResponse)
-            throws NullResponseException, RedirectException {
+    private void processServerResponse(Response serverResponse, RequestTrace trace, long timeToFirstByte,
+                                       boolean saveToFile) throws NullResponseException, RedirectException, IOException {
         if (serverResponse == null) {
             throw new NullResponseException("The server did not respond.",
                     "Like that crush from high school..");
@@ -157,15 +322,167 @@ public class RequestManager extends Service<EverestResponse> {
                     serverResponse.getHeaderString("location"));
         }
 
-        String responseBody = serverResponse.readEntity(String.class);
+        long downloadStartTime = System.nanoTime();
+        ResponseBodyStore bodyStore = null;
+        ResponseDownload download = null;
+        ByteCountingInputStream wireStream = trace.getWireStream();
+        String contentEncoding = serverResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        String decodedEncoding = null;
+        long decodeTime = 0;
+
+        if (serverResponse.hasEntity()) {
+            InputStream stream = serverResponse.readEntity(InputStream.class);
+            ByteCountingInputStream decodedStream = null;
+            long decoderSetupTime = 0;
+
+            if (ContentDecoding.isDecodable(contentEncoding)) {
+                long decoderStartTime = System.nanoTime();
+                decodedStream = new ByteCountingInputStream(ContentDecoding.decode(stream, contentEncoding));
+                decoderSetupTime = System.nanoTime() - decoderStartTime;
+
+                stream = decodedStream;
+                decodedEncoding = contentEncoding;
+            } else if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+                LoggingService.logInfo("Unsupported content-encoding: " + contentEncoding
+                        + ". The body was stored as it was received.", LocalDateTime.now());
+            }
+
+            if (saveToFile) {
+                download = ResponseDownload.save(stream,
+                        serverResponse.getHeaderString("Content-Disposition"), request.getTarget());
+            } else {
+                bodyStore = new ResponseBodyStore(getCharset(serverResponse.getMediaType()));
+                bodyStore.readFrom(stream);
+            }
+
+            if (decodedStream != null) {
+                long wireReadTime = wireStream == null ? 0 : wireStream.getReadTime();
+                decodeTime = Math.max(decoderSetupTime + decodedStream.getReadTime() - wireReadTime, 0);
+            }
+        } else {
+            bodyStore = new ResponseBodyStore(getCharset(serverResponse.getMediaType()));
+            bodyStore.openOutputStream().close();
+        }
+        long downloadTime = System.nanoTime() - downloadStartTime;
+        long decodedSize = download == null ? bodyStore.size() : download.getSize();
+
         response = new EverestResponse();
 
         response.setHeaders(serverResponse.getStringHeaders());
-        response.setTime(initialTime, finalTime);
-        response.setBody(responseBody);
+        response.setTiming(trace.toTimingBreakdown(ClientFactory.tracesConnections(), timeToFirstByte, downloadTime));
+        response.setBodyStore(bodyStore);
         response.setMediaType(serverResponse.getMediaType());
         response.setStatusCode(serverResponse.getStatus());
-        response.setSize(responseBody.length());
+        response.setDecodedSize(decodedSize);
+        response.setContentLength(serverResponse.getLength());
+        response.setContentEncoding(decodedEncoding);
+        response.setDecodeTime(decodeTime);
+        response.setWireSize(wireStream == null ? decodedSize : wireStream.getCount());
+        response.setProtocol(getProtocol(trace));
+
+        if (download != null) {
+            response.setDownloadFile(download.getFile());
+            response.setPreview(download.getPreview());
+        }
+    }
+
+    /**
+     * Parses JSON bodies on the worker thread, so that the response is ready to be shown once the request succeeds.
+     * Bodies which fail to parse are reported when they are shown.
+     */
+    private static void parseJSON(EverestResponse response) {
+        if (response.getBodyStore() == null || !MediaType.APPLICATION_JSON_TYPE.isCompatible(response.getMediaType()))
+            return;
+
+        try {
+            response.getJSONDocument();
+        } catch (IOException e) {
+            // The same exception is thrown again when the response is shown.
+        }
+    }
+
+    /**
+     * Reads a streaming response event by event, until the server closes it or the request is cancelled.
+     * <p>
+     * The response is published as soon as its headers arrive, with a ResponseStream which is filled in
+     * as every event arrives. The body is not stored otherwise.
+     *
+     * @param publisher Publishes the response while the request is still running.
+     * @param cancelled Tells whether the request was cancelled, which ends the stream with a failed read.
+     */
+    private void processStreamingResponse(Response serverResponse, RequestTrace trace, long timeToFirstByte,
+                                          Consumer<EverestResponse> publisher, BooleanSupplier cancelled) throws IOException {
+        ResponseStream stream = new ResponseStream(Settings.streamRetainedLines);
+        String contentEncoding = serverResponse.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+
+        response = new EverestResponse();
+        response.setHeaders(serverResponse.getStringHeaders());
+        response.setTiming(trace.toTimingBreakdown(ClientFactory.tracesConnections(), timeToFirstByte, 0));
+        response.setMediaType(serverResponse.getMediaType());
+        response.setStatusCode(serverResponse.getStatus());
+        response.setContentLength(serverResponse.getLength());
+        response.setProtocol(getProtocol(trace));
+        response.setStream(stream);
+        publisher.accept(response);
+
+        long downloadStartTime = System.nanoTime();
+        InputStream entity = serverResponse.readEntity(InputStream.class);
+        if (ContentDecoding.isDecodable(contentEncoding)) {
+            entity = ContentDecoding.decode(entity, contentEncoding);
+            response.setContentEncoding(contentEncoding);
+        }
+
+        activeStream = entity;
+        try (EventStreamReader reader = new EventStreamReader(entity, getCharset(serverResponse.getMediaType()),
+                EventStreamReader.isServerSentEvents(serverResponse.getMediaType()))) {
+            List<String> event;
+            while (!cancelled.getAsBoolean() && (event = reader.readEvent()) != null)
+                stream.addEvent(event);
+        } catch (IOException e) {
+            if (!cancelled.getAsBoolean())
+                throw e;
+        } finally {
+            activeStream = null;
+            stream.finish();
+        }
+
+        ByteCountingInputStream wireStream = trace.getWireStream();
+        response.setTiming(trace.toTimingBreakdown(ClientFactory.tracesConnections(), timeToFirstByte,
+                System.nanoTime() - downloadStartTime));
+        response.setWireSize(wireStream == null ? 0 : wireStream.getCount());
+    }
+
+    /**
+     * Only the OkHttp connector reports the protocol it negotiated. The others only speak HTTP/1.1.
+     */
+    private static String getProtocol(RequestTrace trace) {
+        return trace.getProtocol() == null ? "HTTP/1.1" : trace.getProtocol();
+    }
+
+    /**
+     * Returns the charset mentioned in the Content-Type of the response, falling back to UTF-8,
+     * which is also what Jersey would use to decode the entity into a String.
+     */
+    static Charset getCharset(MediaType mediaType) {
+        if (mediaType != null) {
+            String charset = mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+
+            try {
+                if (charset != null)
+                    return Charset.forName(charset);
+            } catch (IllegalArgumentException e) {
+                // Unknown or illegal charset names are decoded as UTF-8
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * @return true if the pooled flag was changed.
+     */
+    boolean setPooled(boolean pooled) {
+        return this.pooled.compareAndSet(!pooled, pooled);
     }
 
     public void addHandlers(EventHandler<WorkerStateEvent> running,
@@ -178,7 +495,16 @@ public class RequestManager extends Service<EverestResponse> {
         setOnCancelled(cancelled);
     }
 
+    /**
+     * @param onStreaming Receives streaming responses as soon as their headers arrive, on the JavaFX thread.
+     *                    Their events keep arriving in the ResponseStream till the request succeeds or is cancelled.
+     */
+    public void setOnStreaming(Consumer<EverestResponse> onStreaming) {
+        this.onStreaming = onStreaming;
+    }
+
     public void removeHandlers() {
+        onStreaming = null;
         removeEventHandler(WorkerStateEvent.WORKER_STATE_RUNNING, getOnRunning());
         removeEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, getOnSucceeded());
         removeEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, getOnFailed());
@@ -188,15 +514,17 @@ public class RequestManager extends Service<EverestResponse> {
     /**
      * Adds the request body based on the content type and generates an invocation.
      * Used for DataRequests.
+     * <p>
+     * Files are sent as FileUploads, which are streamed in large blocks by the FileUploadWriter.
      *
      * @return invocation object
      */
-    private Invocation appendBody(DataRequest dataRequest) throws Exception {
+    private static Invocation appendBody(DataRequest dataRequest, Builder requestBuilder, UploadProgress upload) throws Exception {
         /*
             Checks if a custom mime-type is mentioned in the headers.
             If present, it will override the auto-determined one.
          */
-        String overriddenContentType = request.getHeaders().get("Content-Type");
+        String overriddenContentType = dataRequest.getHeaders().get("Content-Type");
         Invocation invocation = null;
         String requestType = dataRequest.getRequestType();
 
@@ -218,8 +546,8 @@ public class RequestManager extends Service<EverestResponse> {
 
                 String filePath;
                 File file;
-                boolean fileException = false;
-                String fileExceptionMessage = null;
+                // Lists every missing file, for pretty-printing FileNotFoundException to the UI
+                StringBuilder missingFiles = new StringBuilder();
                 pairs = dataRequest.getFileTuples();
 
                 // Adding the file tuples to the request
@@ -227,18 +555,22 @@ public class RequestManager extends Service<EverestResponse> {
                     filePath = entry.getValue();
                     file = new File(filePath);
 
-                    if (file.exists())
-                        formData.bodyPart(new FileDataBodyPart(entry.getKey(),
-                                file, MediaType.APPLICATION_OCTET_STREAM_TYPE));
-                    else {
-                        fileException = true;
-                        // For pretty-printing FileNotFoundException to the UI
-                        fileExceptionMessage = " - " + filePath + "\n";
+                    if (!file.isFile()) {
+                        missingFiles.append(" - ").append(filePath).append("\n");
+                        continue;
                     }
+
+                    FormDataContentDisposition disposition = FormDataContentDisposition.name(entry.getKey())
+                            .fileName(file.getName())
+                            .size(file.length())
+                            .modificationDate(new Date(file.lastModified()))
+                            .build();
+                    formData.bodyPart(new FormDataBodyPart(disposition,
+                            new FileUpload(file, upload), MediaType.APPLICATION_OCTET_STREAM_TYPE));
                 }
 
-                if (fileException) {
-                    throw new FileNotFoundException(fileExceptionMessage);
+                if (missingFiles.length() > 0) {
+                    throw new FileNotFoundException(missingFiles.toString());
                 }
 
                 formData.setMediaType(MediaType.MULTIPART_FORM_DATA_TYPE);
@@ -256,15 +588,13 @@ public class RequestManager extends Service<EverestResponse> {
                     break;
                 }
 
-                File check = new File(filePath);
+                file = new File(filePath);
 
-                if (!check.exists()) {
+                if (!file.isFile()) {
                     throw new FileNotFoundException(filePath);
                 }
 
-                FileInputStream stream = new FileInputStream(filePath);
-
-                invocation = getInvocation(overriddenContentType, requestType, stream, requestBuilder);
+                invocation = getInvocation(overriddenContentType, requestType, new FileUpload(file, upload), requestBuilder);
                 break;
             case MediaType.APPLICATION_FORM_URLENCODED:
                 if (overriddenContentType == null)
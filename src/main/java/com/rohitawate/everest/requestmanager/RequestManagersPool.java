@@ -16,21 +16,36 @@
 
 package com.rohitawate.everest.requestmanager;
 
-import java.util.ArrayList;
+import com.rohitawate.everest.settings.Settings;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
- * Provides a dynamically-growing pool RequestManagers used by Everest.
+ * Provides a pool of RequestManagers used by Everest, all of which
+ * execute their requests on a single, bounded RequestDispatcher.
+ * <p>
+ * Managers which have finished (succeeded, failed or were cancelled) return themselves
+ * to a lock-free free-list of idle managers. The manager() method pops an idle manager
+ * off this list and only creates a new one if the list is empty.
  * <p>
- * The manager() method when invoked, searches the pool linearly.
- * The first RequestManager which is not currently running will be
- * returned to the caller. If all the managers in the pool are running,
- * a new one will be created, added to the pool, and returned.
+ * The number of managers is not what limits concurrency: the RequestDispatcher runs at most
+ * Settings.maxConcurrentRequests requests at a time and queues at most Settings.requestQueueCapacity more.
  */
 public class RequestManagersPool {
-    private static ArrayList<RequestManager> pool = new ArrayList<>();
+    private static final ConcurrentLinkedDeque<RequestManager> idleManagers = new ConcurrentLinkedDeque<>();
+    private static final RequestDispatcher dispatcher = new RequestDispatcher(
+            Settings.maxConcurrentRequests, Settings.requestQueueCapacity, Settings.useVirtualThreads);
 
     public static RequestManager manager() {
-        for (RequestManager manager: pool) {
+        RequestManager manager;
+
+        while ((manager = idleManagers.pollFirst()) != null) {
+            manager.setPooled(false);
+
+            /*
+                A manager which was restarted after returning to the pool (for example, on a redirect)
+                is dropped here. It will return itself once it finishes.
+             */
             if (!manager.isRunning()) {
                 manager.reset();
                 return manager;
@@ -38,8 +53,49 @@ public class RequestManagersPool {
         }
 
         RequestManager newManager = new RequestManager();
-        pool.add(newManager);
+        newManager.setExecutor(dispatcher);
 
         return newManager;
     }
+
+    /**
+     * Returns a manager which is done with its request to the free-list.
+     * Called by the RequestManager itself.
+     */
+    static void release(RequestManager manager) {
+        if (manager.setPooled(true))
+            idleManagers.offerFirst(manager);
+    }
+
+    /**
+     * @return Number of requests waiting for the dispatcher to pick them up.
+     */
+    public static int getQueueDepth() {
+        return dispatcher.getQueueDepth();
+    }
+
+    /**
+     * @return Number of requests currently in flight.
+     */
+    public static int getActiveRequests() {
+        return dispatcher.getActiveRequests();
+    }
+
+    /**
+     * @return Average time, in milliseconds, that requests waited for the dispatcher.
+     */
+    public static double getAverageWaitTime() {
+        return dispatcher.getAverageWaitTime();
+    }
+
+    /**
+     * @return Longest time, in milliseconds, that a request waited for the dispatcher.
+     */
+    public static double getMaxWaitTime() {
+        return dispatcher.getMaxWaitTime();
+    }
+
+    public static boolean usesVirtualThreads() {
+        return dispatcher.usesVirtualThreads();
+    }
 }
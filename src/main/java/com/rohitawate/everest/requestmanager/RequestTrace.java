@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.models.responses.TimingBreakdown;
+
+/**
+ * Collects the connection phases of the request being made on the current thread.
+ * <p>
+ * Jersey's synchronous invoke() resolves the host, opens the connection and performs the TLS handshake
+ * on the calling thread. Thus, the instrumented DnsResolver and socket factories of the ConnectionPool
+ * report their timings to the trace bound to the calling thread, if any.
+ * Connections re-used from the pool report nothing, leaving their phases at 0.
+ * <p>
+ * The ByteCountingFilter likewise hands over the stream counting the bytes of the response entity,
+ * and connectors which negotiate the protocol report the one they settled on.
+ */
+class RequestTrace {
+    private static final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+    private long dnsTime;
+    private long connectTime;
+    private long tlsTime;
+    private ByteCountingInputStream wireStream;
+    private String protocol;
+
+    private RequestTrace() {
+    }
+
+    /**
+     * Binds a fresh trace to the current thread.
+     */
+    static RequestTrace begin() {
+        RequestTrace trace = new RequestTrace();
+        current.set(trace);
+        return trace;
+    }
+
+    static void end() {
+        current.remove();
+    }
+
+    static void addDnsTime(long time) {
+        RequestTrace trace = current.get();
+        if (trace != null)
+            trace.dnsTime += time;
+    }
+
+    static void addConnectTime(long time) {
+        RequestTrace trace = current.get();
+        if (trace != null)
+            trace.connectTime += time;
+    }
+
+    static void addTlsTime(long time) {
+        RequestTrace trace = current.get();
+        if (trace != null)
+            trace.tlsTime += time;
+    }
+
+    static void setWireStream(ByteCountingInputStream stream) {
+        RequestTrace trace = current.get();
+        if (trace != null)
+            trace.wireStream = stream;
+    }
+
+    /**
+     * @return The stream counting the bytes of the response entity on the wire, or null if it has no entity.
+     */
+    ByteCountingInputStream getWireStream() {
+        return wireStream;
+    }
+
+    static void setProtocol(String protocol) {
+        RequestTrace trace = current.get();
+        if (trace != null)
+            trace.protocol = protocol;
+    }
+
+    /**
+     * @return The protocol negotiated by the connector, such as "HTTP/2", or null if it does not report one.
+     */
+    String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @param connectionPhasesTraced Whether the connector reports the DNS, connect and TLS phases at all.
+     */
+    TimingBreakdown toTimingBreakdown(boolean connectionPhasesTraced, long timeToFirstByte, long downloadTime) {
+        if (!connectionPhasesTraced)
+            return new TimingBreakdown(TimingBreakdown.UNAVAILABLE, TimingBreakdown.UNAVAILABLE,
+                    TimingBreakdown.UNAVAILABLE, timeToFirstByte, downloadTime);
+
+        return new TimingBreakdown(dnsTime, connectTime, tlsTime, timeToFirstByte, downloadTime);
+    }
+}
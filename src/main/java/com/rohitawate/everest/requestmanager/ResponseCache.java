@@ -0,0 +1,311 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.auth.BasicAuthProvider;
+import com.rohitawate.everest.logging.LoggingService;
+import com.rohitawate.everest.misc.EverestUtilities;
+import com.rohitawate.everest.models.requests.EverestRequest;
+import com.rohitawate.everest.models.requests.GETRequest;
+import com.rohitawate.everest.models.responses.EverestResponse;
+import com.rohitawate.everest.models.responses.ResponseBodyStore;
+import com.rohitawate.everest.settings.Settings;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * A client-side HTTP cache for GET requests, enabled through Settings.responseCacheEnabled.
+ * <p>
+ * Every entry is stored on disk under Everest/cache/, as its metadata (a JSON-serialized CacheEntry)
+ * and its decoded body, so that the cache outlives the session. Entries whose bodies are no larger than an eighth
+ * of Settings.responseCacheMemorySize also have their bodies held in memory. Both tiers evict their least
+ * recently used entries once they grow past their limits.
+ * <p>
+ * Fresh entries are served without a request. Stale entries, and those which the request or the response
+ * asks to be revalidated (no-cache), are revalidated with a conditional request using their ETag and Last-Modified.
+ * <p>
+ * Entries are keyed by the URL and the headers of the request, so changing either of them misses the cache.
+ * Requests using digest authentication, whose headers differ on every request, are never cached.
+ */
+class ResponseCache {
+    private static final String CACHE_DIRECTORY = "Everest/cache/";
+    private static final String METADATA_EXTENSION = ".meta";
+    private static final String BODY_EXTENSION = ".body";
+
+    // Entries on disk, least recently used first
+    private static final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Bodies held in memory, least recently used first
+    private static final LinkedHashMap<String, byte[]> bodies = new LinkedHashMap<>(16, 0.75f, true);
+    private static long diskSize;
+    private static long memorySize;
+    private static boolean loaded;
+
+    /**
+     * @return The key of the request in the cache, or null if the request must not be served from or stored in it.
+     */
+    static String getKey(EverestRequest request) {
+        if (!Settings.responseCacheEnabled || request.getClass() != GETRequest.class)
+            return null;
+
+        if (CacheEntry.getDirectives(getHeader(request, HttpHeaders.CACHE_CONTROL)).contains("no-store"))
+            return null;
+
+        StringBuilder key = new StringBuilder(request.getTarget().toString());
+
+        // Header names are case-insensitive and HashMaps are unordered, so they are sorted to make a stable key.
+        TreeMap<String, String> headers = new TreeMap<>();
+        request.getHeaders().forEach((name, value) -> headers.put(name.toLowerCase(), value));
+        if (request.getAuthProvider() != null && request.getAuthProvider().isEnabled()) {
+            if (!(request.getAuthProvider() instanceof BasicAuthProvider))
+                return null;
+
+            headers.put("authorization", request.getAuthProvider().getAuthHeader());
+        }
+
+        headers.forEach((name, value) -> key.append('\n').append(name).append(':').append(value));
+
+        return sha256(key.toString());
+    }
+
+    /**
+     * @return true if the request asks for the cached response to be revalidated even if it is fresh.
+     */
+    static boolean requiresRevalidation(EverestRequest request) {
+        Set<String> directives = CacheEntry.getDirectives(getHeader(request, HttpHeaders.CACHE_CONTROL));
+        String pragma = getHeader(request, "Pragma");
+
+        return directives.contains("no-cache") || CacheEntry.getDirectiveValue(directives, "max-age") == 0
+                || (pragma != null && pragma.trim().equalsIgnoreCase("no-cache"));
+    }
+
+    static synchronized CacheEntry lookup(String key) {
+        load();
+
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            // Keeps the order of use for the next session's index
+            getFile(key, METADATA_EXTENSION).setLastModified(System.currentTimeMillis());
+        }
+
+        return entry;
+    }
+
+    /**
+     * Builds a response out of a cached entry, with a copy of its body.
+     *
+     * @return The response, or null if the body could no longer be read, in which case the entry is dropped.
+     */
+    static synchronized EverestResponse toResponse(String key, CacheEntry entry) {
+        MediaType mediaType = entry.mediaType == null ? null : MediaType.valueOf(entry.mediaType);
+        ResponseBodyStore bodyStore = new ResponseBodyStore(RequestManager.getCharset(mediaType));
+
+        try {
+            byte[] body = bodies.get(key);
+            bodyStore.readFrom(body != null ? new ByteArrayInputStream(body)
+                    : new FileInputStream(getFile(key, BODY_EXTENSION)));
+        } catch (IOException e) {
+            LoggingService.logWarning("Could not read cached response for " + entry.url + ". Dropping it.",
+                    e, LocalDateTime.now());
+            bodyStore.dispose();
+            remove(key);
+            return null;
+        }
+
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putAll(entry.headers);
+
+        EverestResponse response = new EverestResponse();
+        response.setHeaders(headers);
+        response.setBodyStore(bodyStore);
+        response.setMediaType(mediaType);
+        response.setStatusCode(entry.statusCode);
+        response.setDecodedSize(bodyStore.size());
+        return response;
+    }
+
+    /**
+     * Stores the response if its headers allow it, replacing any previous entry for the key.
+     */
+    static void store(String key, String url, EverestResponse response) {
+        if (response.getStatusCode() != 200 || response.getBodyStore() == null
+                || response.getDecodedSize() > Settings.responseCacheDiskSize)
+            return;
+
+        CacheEntry entry = new CacheEntry();
+        entry.url = url;
+        entry.statusCode = response.getStatusCode();
+        entry.mediaType = response.getMediaType() == null ? null : response.getMediaType().toString();
+        entry.bodySize = response.getDecodedSize();
+        if (!entry.readHeaders(response.getHeaders(), System.currentTimeMillis()))
+            return;
+
+        // The body is copied out of the store before taking the lock, since it may be large.
+        boolean inMemory = entry.bodySize <= Settings.responseCacheMemorySize / 8;
+        File bodyFile = null;
+        try {
+            File directory = new File(CACHE_DIRECTORY);
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Could not create " + CACHE_DIRECTORY);
+
+            bodyFile = File.createTempFile("entry-", ".tmp", directory);
+            ByteArrayOutputStream memoryCopy = inMemory ? new ByteArrayOutputStream((int) entry.bodySize) : null;
+
+            try (InputStream body = response.getBodyStore().openInputStream();
+                 OutputStream fileCopy = new BufferedOutputStream(new FileOutputStream(bodyFile))) {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = body.read(buffer)) != -1) {
+                    fileCopy.write(buffer, 0, count);
+                    if (memoryCopy != null)
+                        memoryCopy.write(buffer, 0, count);
+                }
+            }
+
+            commit(key, entry, bodyFile, memoryCopy == null ? null : memoryCopy.toByteArray());
+        } catch (IOException e) {
+            LoggingService.logWarning("Could not cache response for " + url + ".", e, LocalDateTime.now());
+            if (bodyFile != null)
+                bodyFile.delete();
+        }
+    }
+
+    /**
+     * Takes on the headers of a 304 response which revalidated the entry.
+     */
+    static synchronized void revalidated(String key, CacheEntry entry, MultivaluedMap<String, String> headers) {
+        entry.refresh(headers, System.currentTimeMillis());
+
+        try {
+            EverestUtilities.jsonMapper.writeValue(getFile(key, METADATA_EXTENSION), entry);
+        } catch (IOException e) {
+            LoggingService.logWarning("Could not update cached response for " + entry.url + ".", e, LocalDateTime.now());
+        }
+    }
+
+    private static synchronized void commit(String key, CacheEntry entry, File bodyFile, byte[] body) throws IOException {
+        load();
+        remove(key);
+
+        Files.move(bodyFile.toPath(), getFile(key, BODY_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        EverestUtilities.jsonMapper.writeValue(getFile(key, METADATA_EXTENSION), entry);
+
+        entries.put(key, entry);
+        diskSize += entry.bodySize;
+        if (body != null) {
+            bodies.put(key, body);
+            memorySize += body.length;
+        }
+
+        evict();
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<String, byte[]>> memoryIterator = bodies.entrySet().iterator();
+        while (memorySize > Settings.responseCacheMemorySize && memoryIterator.hasNext()) {
+            memorySize -= memoryIterator.next().getValue().length;
+            memoryIterator.remove();
+        }
+
+        while (diskSize > Settings.responseCacheDiskSize && !entries.isEmpty())
+            remove(entries.keySet().iterator().next());
+    }
+
+    private static void remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null)
+            diskSize -= entry.bodySize;
+
+        byte[] body = bodies.remove(key);
+        if (body != null)
+            memorySize -= body.length;
+
+        getFile(key, METADATA_EXTENSION).delete();
+        getFile(key, BODY_EXTENSION).delete();
+    }
+
+    /**
+     * Indexes the entries left on disk by previous sessions, the least recently modified first.
+     */
+    private static void load() {
+        if (loaded)
+            return;
+
+        loaded = true;
+        File[] metadataFiles = new File(CACHE_DIRECTORY).listFiles((directory, name) -> name.endsWith(METADATA_EXTENSION));
+        if (metadataFiles == null)
+            return;
+
+        Arrays.sort(metadataFiles, Comparator.comparingLong(File::lastModified));
+        for (File metadataFile : metadataFiles) {
+            String name = metadataFile.getName();
+            String key = name.substring(0, name.length() - METADATA_EXTENSION.length());
+
+            try {
+                CacheEntry entry = EverestUtilities.jsonMapper.readValue(metadataFile, CacheEntry.class);
+                if (!getFile(key, BODY_EXTENSION).exists())
+                    throw new FileNotFoundException(key + BODY_EXTENSION);
+
+                entries.put(key, entry);
+                diskSize += entry.bodySize;
+            } catch (IOException e) {
+                LoggingService.logWarning("Discarding unreadable cache entry: " + name, e, LocalDateTime.now());
+                remove(key);
+            }
+        }
+
+        evict();
+        LoggingService.logInfo("Loaded " + entries.size() + " cached responses.", LocalDateTime.now());
+    }
+
+    private static File getFile(String key, String extension) {
+        return new File(CACHE_DIRECTORY + key + extension);
+    }
+
+    private static String getHeader(EverestRequest request, String name) {
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name))
+                return header.getValue();
+        }
+
+        return null;
+    }
+
+    private static String sha256(String string) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(string.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
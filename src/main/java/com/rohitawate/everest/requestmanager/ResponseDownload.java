@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import javax.ws.rs.core.MediaType;
+import java.io.*;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Saves response bodies straight to files under Everest/downloads/, rather than to a ResponseBodyStore.
+ * Used for binary bodies, which cannot be shown as text, and for all bodies when Settings.saveResponsesToFile is set.
+ * <p>
+ * Only the first PREVIEW_SIZE bytes are kept in memory, to be shown as a hex dump.
+ */
+class ResponseDownload {
+    static final int PREVIEW_SIZE = 4096;
+
+    private static final String DOWNLOAD_DIRECTORY = "Everest/downloads/";
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final Pattern FILE_NAME = Pattern.compile("filename(\\*?)\\s*=\\s*(?:UTF-8'[^']*')?\"?([^\";]+)\"?",
+            Pattern.CASE_INSENSITIVE);
+
+    private final File file;
+    private byte[] preview;
+    private long size;
+
+    private ResponseDownload(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true if bodies of the media type are not text. Bodies without a media type are taken to be text.
+     */
+    static boolean isBinary(MediaType mediaType) {
+        if (mediaType == null || mediaType.getType().equalsIgnoreCase("text"))
+            return false;
+
+        String subtype = mediaType.getSubtype().toLowerCase();
+        return !(subtype.equals("json") || subtype.endsWith("+json")
+                || subtype.equals("xml") || subtype.endsWith("+xml")
+                || subtype.equals("javascript") || subtype.equals("x-www-form-urlencoded")
+                || subtype.equals("x-ndjson") || subtype.equals("ndjson") || subtype.equals("jsonl")
+                || subtype.equals("json-seq") || subtype.equals("graphql"));
+    }
+
+    /**
+     * Streams the body into a new file, named after the Content-Disposition of the response or else the URL.
+     * The stream is closed. If the body cannot be read in full, the file is deleted.
+     */
+    static ResponseDownload save(InputStream body, String contentDisposition, URL target) throws IOException {
+        ResponseDownload download = new ResponseDownload(createFile(getFileName(contentDisposition, target)));
+        byte[] block = new byte[BLOCK_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        ByteArrayOutputStream preview = new ByteArrayOutputStream(PREVIEW_SIZE);
+
+        try (InputStream stream = body;
+             FileChannel channel = FileChannel.open(download.file.toPath(), StandardOpenOption.WRITE)) {
+            int count;
+            while ((count = stream.read(block)) != -1) {
+                if (preview.size() < PREVIEW_SIZE)
+                    preview.write(block, 0, Math.min(count, PREVIEW_SIZE - preview.size()));
+
+                buffer.clear().limit(count);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+
+                download.size += count;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Doesn't leave a truncated file behind in the download directory
+            Files.deleteIfExists(download.file.toPath());
+            throw e;
+        }
+
+        download.preview = preview.toByteArray();
+        return download;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The first bytes of the body, PREVIEW_SIZE at most.
+     */
+    byte[] getPreview() {
+        return preview;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    static String getFileName(String contentDisposition, URL target) {
+        String name = null;
+
+        if (contentDisposition != null) {
+            Matcher matcher = FILE_NAME.matcher(contentDisposition);
+            while (matcher.find()) {
+                try {
+                    // filename* is percent-encoded, and takes precedence over filename.
+                    if (!matcher.group(1).isEmpty())
+                        name = URLDecoder.decode(matcher.group(2), "UTF-8");
+                    else if (name == null)
+                        name = matcher.group(2);
+                } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                    // Falls back to filename or the URL
+                }
+            }
+        }
+
+        if (name == null) {
+            String path = target.getPath();
+            name = path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        // Keeps the file inside the download directory
+        name = name.trim().replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+        if (name.isEmpty() || name.equals(".") || name.equals(".."))
+            name = "response";
+
+        return name;
+    }
+
+    /**
+     * Creates the file, adding a number to its name if one by that name already exists. For example, "image (1).png".
+     */
+    private static File createFile(String name) throws IOException {
+        File directory = new File(DOWNLOAD_DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Could not create " + DOWNLOAD_DIRECTORY);
+
+        int extension = name.lastIndexOf('.');
+        String baseName = extension > 0 ? name.substring(0, extension) : name;
+        String extensionName = extension > 0 ? name.substring(extension) : "";
+
+        for (int copy = 0; ; copy++) {
+            File file = new File(directory, copy == 0 ? name : baseName + " (" + copy + ")" + extensionName);
+            try {
+                Files.createFile(file.toPath());
+                return file;
+            } catch (FileAlreadyExistsException e) {
+                // Tries the next number
+            }
+        }
+    }
+}
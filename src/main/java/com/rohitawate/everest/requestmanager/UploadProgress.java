@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Rohit Awate.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.rohitawate.everest.requestmanager;
+
+import java.util.function.Consumer;
+
+/**
+ * Tracks the bytes of files sent as part of a request body, reporting to a listener after every block.
+ * A single UploadProgress is shared by all the files of a request, so that multipart bodies report
+ * their progress as a whole.
+ */
+class UploadProgress {
+    private final Consumer<UploadProgress> listener;
+    private volatile long total;
+    private volatile long sent;
+    private volatile long startTime;
+
+    UploadProgress(Consumer<UploadProgress> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Counts a file towards the total. Called for every file as the request body is built.
+     */
+    void addFile(long size) {
+        total += size;
+    }
+
+    void addSent(long bytes) {
+        if (startTime == 0)
+            startTime = System.nanoTime();
+
+        sent += bytes;
+        listener.accept(this);
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return Average rate at which the files have been sent so far, in bytes per second.
+     */
+    double getRate() {
+        long elapsed = System.nanoTime() - startTime;
+        if (startTime == 0 || elapsed <= 0)
+            return 0;
+
+        return sent * 1_000_000_000.0 / elapsed;
+    }
+
+    /**
+     * @return Estimated number of seconds left at the average rate so far, or -1 if the rate is not known yet.
+     */
+    long getSecondsLeft() {
+        double rate = getRate();
+        if (rate <= 0)
+            return -1;
+
+        return (long) Math.ceil((total - sent) / rate);
+    }
+
+    /**
+     * For example, "Sending 12.5 of 40.0 MB at 8.2 MB/s, 4 s left".
+     */
+    @Override
+    public String toString() {
+        long secondsLeft = getSecondsLeft();
+        return String.format("Sending %.1f of %.1f MB at %.1f MB/s%s", toMegabytes(sent), toMegabytes(total),
+                toMegabytes((long) getRate()), secondsLeft < 0 ? "" : ", " + secondsLeft + " s left");
+    }
+
+    private static double toMegabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
@@ -27,11 +27,48 @@ public class Settings {
     public static boolean connectionReadTimeOutEnable = false;
     public static int connectionReadTimeOut = 30000;
 
+    // "Apache" (pooled connections), "HttpURLConnection" or "OkHttp" (HTTP/2)
+    public static String connector = "Apache";
+    // Speaks cleartext HTTP/2 to http:// URLs without an upgrade, for local test servers. Only used by OkHttp.
+    public static boolean http2PriorKnowledge = false;
+    public static int maxConnections = 50;
+    public static int maxConnectionsPerRoute = 10;
+    public static int connectionIdleTimeOut = 30000;
+
+    // Requests beyond maxConcurrentRequests wait in a queue of requestQueueCapacity
+    public static int maxConcurrentRequests = 16;
+    public static int requestQueueCapacity = 64;
+    public static boolean useVirtualThreads = true;
+
     public static String theme = "Adreana";
     public static String syntaxTheme = "Moondust";
     public static int showHistoryRange = 7;
 
     public static boolean editorWrapText = true;
+    // Characters beyond which only the paragraphs around the visible ones are highlighted
+    public static int viewportHighlightingThreshold = 1024 * 1024;
+
+    // Bytes of a response body held on the heap before the rest is spilled to disk
+    public static int responseBodyMemoryWindow = 8 * 1024 * 1024;
+    // Saves every response body to a file under Everest/downloads/, rather than only binary ones
+    public static boolean saveResponsesToFile = false;
+
+    // Lines of a streaming response (Server-Sent Events, newline-delimited JSON) retained in the response pane
+    public static int streamRetainedLines = 10000;
+    // Also streams other chunked text responses line by line, rather than waiting for them to end
+    public static boolean streamChunkedResponses = false;
+
+    // Content-codings advertised through Accept-Encoding, and decoded, unless a request sets its own. Empty to disable.
+    public static String acceptEncoding = "gzip, deflate, br";
+
+    // Caches responses to GET requests, revalidating them with ETag and Last-Modified once stale
+    public static boolean responseCacheEnabled = false;
+    // Bytes of cached bodies held on the heap, and under Everest/cache/
+    public static int responseCacheMemorySize = 32 * 1024 * 1024;
+    public static int responseCacheDiskSize = 256 * 1024 * 1024;
 
     public static String fetchSource = "SQLite";
+
+    // "Drop" discards logs when the log buffer is full, "Block" makes the caller wait for room
+    public static String logOverflowPolicy = "Drop";
 }
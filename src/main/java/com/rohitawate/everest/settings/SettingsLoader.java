@@ -58,11 +58,32 @@ public class SettingsLoader implements Runnable {
             if (Settings.connectionReadTimeOutEnable)
                 Settings.connectionReadTimeOut = setIntegerSetting(Settings.connectionReadTimeOut, "connectionReadTimeOut");
 
+            Settings.connector = EverestUtilities.trimString(setStringSetting(Settings.connector, "connector"));
+            Settings.http2PriorKnowledge = setBooleanSetting(Settings.http2PriorKnowledge, "http2PriorKnowledge");
+            Settings.maxConnections = setIntegerSetting(Settings.maxConnections, "maxConnections");
+            Settings.maxConnectionsPerRoute = setIntegerSetting(Settings.maxConnectionsPerRoute, "maxConnectionsPerRoute");
+            Settings.connectionIdleTimeOut = setIntegerSetting(Settings.connectionIdleTimeOut, "connectionIdleTimeOut");
+
+            Settings.maxConcurrentRequests = setIntegerSetting(Settings.maxConcurrentRequests, "maxConcurrentRequests");
+            Settings.requestQueueCapacity = setIntegerSetting(Settings.requestQueueCapacity, "requestQueueCapacity");
+            Settings.useVirtualThreads = setBooleanSetting(Settings.useVirtualThreads, "useVirtualThreads");
+
             Settings.editorWrapText = setBooleanSetting(Settings.editorWrapText, "editorWrapText");
+            Settings.viewportHighlightingThreshold = setIntegerSetting(Settings.viewportHighlightingThreshold, "viewportHighlightingThreshold");
+            Settings.responseBodyMemoryWindow = setIntegerSetting(Settings.responseBodyMemoryWindow, "responseBodyMemoryWindow");
+            Settings.saveResponsesToFile = setBooleanSetting(Settings.saveResponsesToFile, "saveResponsesToFile");
+            Settings.streamRetainedLines = setIntegerSetting(Settings.streamRetainedLines, "streamRetainedLines");
+            Settings.streamChunkedResponses = setBooleanSetting(Settings.streamChunkedResponses, "streamChunkedResponses");
+            Settings.acceptEncoding = EverestUtilities.trimString(setStringSetting(Settings.acceptEncoding, "acceptEncoding"));
+            Settings.responseCacheEnabled = setBooleanSetting(Settings.responseCacheEnabled, "responseCacheEnabled");
+            Settings.responseCacheMemorySize = setIntegerSetting(Settings.responseCacheMemorySize, "responseCacheMemorySize");
+            Settings.responseCacheDiskSize = setIntegerSetting(Settings.responseCacheDiskSize, "responseCacheDiskSize");
 
             Settings.theme = EverestUtilities.trimString(setStringSetting(Settings.theme, "theme"));
             Settings.syntaxTheme = EverestUtilities.trimString(setStringSetting(Settings.syntaxTheme, "syntaxTheme"));
             Settings.showHistoryRange = setIntegerSetting(Settings.showHistoryRange, "showHistoryRange");
+
+            Settings.logOverflowPolicy = EverestUtilities.trimString(setStringSetting(Settings.logOverflowPolicy, "logOverflowPolicy"));
         } catch (IOException IOE) {
             LoggingService.logInfo("Settings file contains invalid JSON. Loading defaults.", LocalDateTime.now());
         } catch (NullPointerException NPE) {
@@ -16,7 +16,9 @@
 
 package com.rohitawate.everest.state;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.rohitawate.everest.models.requests.HTTPConstants;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 
 import java.util.List;
 
@@ -54,6 +56,14 @@ public class ComposerState {
     // File path of application/octet-stream requests
     public String binaryFilePath;
 
+    // Timings of the response received for this request, if any. Only persisted in the history.
+    @JsonIgnore
+    public TimingBreakdown timings;
+
+    // ID of the state in the history it was loaded from, which the next page of the history is fetched after
+    @JsonIgnore
+    public int historyID;
+
     public ComposerState() {
         this.httpMethod = HTTPConstants.GET;
     }
@@ -25,11 +25,14 @@ import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.models.requests.DataRequest;
 import com.rohitawate.everest.models.requests.EverestRequest;
 import com.rohitawate.everest.models.responses.EverestResponse;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 import com.rohitawate.everest.requestmanager.RequestManager;
 import javafx.event.Event;
 
 import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.MediaType;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -48,8 +51,9 @@ public class DashboardState {
     public String responseType;
     public String responseBody;
     public int responseTime;
-    public int responseSize;
+    public long responseSize;
     public HashMap<String, String> responseHeaders;
+    public TimingBreakdown timing;
 
     // ErrorLayer parameters
     public String errorTitle;
@@ -78,6 +82,13 @@ public class DashboardState {
     }
 
     private void onRequestCancelled(Event event) {
+        EverestResponse response = requestManager.getValue();
+        if (response != null && response.getStream() != null) {
+            // Keeps the events received till the stream was stopped.
+            onRequestSucceeded(event);
+            return;
+        }
+
         this.visibleResponseLayer = ResponseLayer.PROMPT;
         requestManager.reset();
     }
@@ -91,8 +102,23 @@ public class DashboardState {
         else
             responseType = "";
         responseTime = (int) response.getTime();
-        responseSize = response.getSize();
-        responseBody = response.getBody();
+        responseSize = response.getWireSize();
+        timing = response.getTiming();
+        try {
+            if (response.getDownloadFile() != null) {
+                responseBody = response.describeDownload();
+                responseType = MediaType.TEXT_PLAIN;
+            } else if (response.getStream() != null) {
+                responseBody = response.getStream().getText();
+                responseType = MediaType.TEXT_PLAIN;
+            } else {
+                responseBody = response.getBody();
+            }
+        } catch (IOException e) {
+            LoggingService.logSevere("Could not read response body.", e, LocalDateTime.now());
+        } finally {
+            response.dispose();
+        }
 
         if (responseHeaders == null)
             responseHeaders = new HashMap<>();
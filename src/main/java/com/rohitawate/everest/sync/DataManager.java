@@ -1,7 +1,10 @@
 package com.rohitawate.everest.sync;
 
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 import com.rohitawate.everest.state.ComposerState;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -20,8 +23,17 @@ public interface DataManager {
 
     /**
      * Saves the state of the Composer when the request was made.
+     *
+     * @return The ID the request was saved under, which is passed back to saveTimings().
+     */
+    int saveState(ComposerState newState) throws Exception;
+
+    /**
+     * Saves the timings of the response received for the request saved under the given ID.
+     * DataManagers which do not store timings may ignore them.
      */
-    void saveState(ComposerState newState) throws Exception;
+    default void saveTimings(int requestID, TimingBreakdown timings) throws Exception {
+    }
 
     /**
      * Fetches all the states of the Composer when the previous requests were made.
@@ -30,6 +42,43 @@ public interface DataManager {
      */
     List<ComposerState> getHistory() throws Exception;
 
+    /**
+     * Fetches a page of the history, newest first.
+     * Pages are fetched after the last state of the previous page rather than at an offset,
+     * so that states saved meanwhile do not shift the pages.
+     * DataManagers which can query their source by range should override this,
+     * so that the entire history need not be loaded for every page.
+     *
+     * @param beforeID Only states with a lower historyID are returned. Integer.MAX_VALUE fetches the first page.
+     * @param limit    Maximum number of states to return.
+     */
+    default List<ComposerState> getHistory(int beforeID, int limit) throws Exception {
+        List<ComposerState> history = new ArrayList<>(getHistory());
+        Collections.reverse(history);
+
+        List<ComposerState> page = new ArrayList<>();
+        for (ComposerState state : history) {
+            if (limit >= 0 && page.size() == limit)
+                break;
+
+            if (state.historyID < beforeID)
+                page.add(state);
+        }
+
+        return page;
+    }
+
+    /**
+     * Searches the history for the given string.
+     * DataManagers which maintain an index of the history should override this.
+     *
+     * @param limit Maximum number of states to return.
+     * @return The best matching states, best first, or null if the DataManager does not support searching.
+     */
+    default List<ComposerState> searchHistory(String searchString, int limit) throws Exception {
+        return null;
+    }
+
     /**
      * Returns the state of the Composer when the last request was made.
      * If this DataManager is the primary fetching source, SyncManager uses
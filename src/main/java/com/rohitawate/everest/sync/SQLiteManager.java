@@ -18,6 +18,7 @@ package com.rohitawate.everest.sync;
 
 import com.rohitawate.everest.logging.LoggingService;
 import com.rohitawate.everest.models.requests.HTTPConstants;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 import com.rohitawate.everest.settings.Settings;
 import com.rohitawate.everest.state.ComposerState;
 import com.rohitawate.everest.state.FieldState;
@@ -28,11 +29,26 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 
+/**
+ * Stores the history in an SQLite database at Everest/config/history.sqlite.
+ * <p>
+ * The database runs in write-ahead-logging mode and every request is saved in a single transaction,
+ * so that a save costs one sync of the log rather than one per row.
+ * Statements are prepared once per connection and re-used thereafter.
+ */
 class SQLiteManager implements DataManager {
+    private static final String DATABASE_PATH = "Everest/config/history.sqlite";
+
     private Connection conn;
     private PreparedStatement statement;
+    private PreparedStatement saveRequestStatement;
+    private final HashMap<String, PreparedStatement> statementCache = new HashMap<>();
+    private boolean searchIndexAvailable;
 
     private static class Queries {
         private static final String[] CREATE_QUERIES = {
@@ -41,16 +57,61 @@ class SQLiteManager implements DataManager {
                 "CREATE TABLE IF NOT EXISTS Bodies(RequestID INTEGER, Type TEXT NOT NULL CHECK(Type IN ('application/json', 'application/xml', 'text/html', 'text/plain')), Body TEXT NOT NULL, FOREIGN KEY(RequestID) REFERENCES Requests(ID))",
                 "CREATE TABLE IF NOT EXISTS FilePaths(RequestID INTEGER, Path TEXT NOT NULL, FOREIGN KEY(RequestID) REFERENCES Requests(ID))",
                 "CREATE TABLE IF NOT EXISTS Tuples(RequestID INTEGER, Type TEXT NOT NULL CHECK(Type IN ('Header', 'Param', 'URLString', 'FormString', 'File')), Key TEXT NOT NULL, Value TEXT NOT NULL, Checked INTEGER CHECK (Checked IN (0, 1)), FOREIGN KEY(RequestID) REFERENCES Requests(ID))",
-                "CREATE TABLE IF NOT EXISTS SimpleAuthCredentials(RequestID INTEGER, Type TEXT NOT NULL, Username TEXT NOT NULL, Password TEXT NOT NULL, Enabled INTEGER CHECK (Enabled IN (1, 0)), FOREIGN KEY(RequestID) REFERENCES Requests(ID))"
+                "CREATE TABLE IF NOT EXISTS SimpleAuthCredentials(RequestID INTEGER, Type TEXT NOT NULL, Username TEXT NOT NULL, Password TEXT NOT NULL, Enabled INTEGER CHECK (Enabled IN (1, 0)), FOREIGN KEY(RequestID) REFERENCES Requests(ID))",
+                "CREATE TABLE IF NOT EXISTS Timings(RequestID INTEGER, DNS INTEGER NOT NULL, Connect INTEGER NOT NULL, TLS INTEGER NOT NULL, TTFB INTEGER NOT NULL, Download INTEGER NOT NULL, FOREIGN KEY(RequestID) REFERENCES Requests(ID))",
+                "CREATE INDEX IF NOT EXISTS RequestsByDate ON Requests(Date)",
+                "CREATE INDEX IF NOT EXISTS RequestContentMapByRequest ON RequestContentMap(RequestID)",
+                "CREATE INDEX IF NOT EXISTS BodiesByRequest ON Bodies(RequestID)",
+                "CREATE INDEX IF NOT EXISTS FilePathsByRequest ON FilePaths(RequestID)",
+                "CREATE INDEX IF NOT EXISTS TuplesByRequest ON Tuples(RequestID, Type)",
+                "CREATE INDEX IF NOT EXISTS SimpleAuthCredentialsByRequest ON SimpleAuthCredentials(RequestID, Type)",
+                "CREATE INDEX IF NOT EXISTS TimingsByRequest ON Timings(RequestID)",
+                // Per-connection table holding the IDs of the requests to be loaded, in the order they are to be shown
+                "CREATE TEMP TABLE IF NOT EXISTS SelectedRequests(Position INTEGER PRIMARY KEY, RequestID INTEGER NOT NULL)"
         };
 
+        /*
+            Full-text index of the requests, keyed by their IDs.
+            Prefixes of 2 and 3 characters are indexed as well, for the queries made while the user is still typing.
+         */
+        private static final String CREATE_SEARCH_INDEX = "CREATE VIRTUAL TABLE IF NOT EXISTS RequestsSearchIndex USING fts5(Target, Method, Fields, Body, prefix='2 3')";
+        private static final String INDEX_REQUESTS = "INSERT INTO RequestsSearchIndex(rowid, Target, Method, Fields, Body) SELECT ID, Target, Type, "
+                + "IFNULL((SELECT group_concat(Key || ' ' || Value, ' ') FROM Tuples WHERE RequestID == Requests.ID), ''), "
+                + "IFNULL((SELECT Body FROM Bodies WHERE RequestID == Requests.ID), '') || ' ' || IFNULL((SELECT Path FROM FilePaths WHERE RequestID == Requests.ID), '') "
+                + "FROM Requests";
+        private static final String INDEX_REQUEST = INDEX_REQUESTS + " WHERE ID == ?";
+        private static final String INDEX_MISSING_REQUESTS = INDEX_REQUESTS + " WHERE ID > (SELECT IFNULL(MAX(rowid), 0) FROM RequestsSearchIndex)";
+
+        /*
+            Queries for loading the history in bulk.
+            The IDs of the requests to be loaded are first put in SelectedRequests. Each of the queries
+            then fetches the rows of one table for all of them at once, rather than issuing a query per table per request.
+         */
+        private static final String CLEAR_SELECTION = "DELETE FROM temp.SelectedRequests";
+        private static final String SELECT_PAGE = "INSERT INTO temp.SelectedRequests(RequestID) SELECT ID FROM Requests WHERE Date > ? AND ID < ? ORDER BY ID DESC LIMIT ?";
+        /*
+            Weighted like the relativity index of the history items: matches in the target count the most. Ties go to the newest.
+            The unary + keeps the date filter out of FTS5, which would otherwise re-run the MATCH for every recent request.
+         */
+        private static final String SELECT_SEARCH_RESULTS = "INSERT INTO temp.SelectedRequests(RequestID) SELECT rowid FROM RequestsSearchIndex "
+                + "WHERE RequestsSearchIndex MATCH ? AND +rowid IN (SELECT ID FROM Requests WHERE Date > ?) "
+                + "ORDER BY bm25(RequestsSearchIndex, 10.0, 7.0, 7.0, 8.0), rowid DESC LIMIT ?";
+        private static final String SELECTED_REQUEST_IDS = "SELECT RequestID FROM temp.SelectedRequests";
+        private static final String SELECT_SELECTED_REQUESTS = "SELECT ID, Type, Target, AuthMethod FROM temp.SelectedRequests JOIN Requests ON Requests.ID == SelectedRequests.RequestID ORDER BY Position";
+        private static final String SELECT_SELECTED_TUPLES = "SELECT RequestID, Type, Key, Value, Checked FROM Tuples WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ") ORDER BY rowid";
+        private static final String SELECT_SELECTED_SIMPLE_AUTH_CREDENTIALS = "SELECT RequestID, Type, Username, Password, Enabled FROM SimpleAuthCredentials WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ")";
+        private static final String SELECT_SELECTED_CONTENT_TYPES = "SELECT RequestID, ContentType FROM RequestContentMap WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ")";
+        private static final String SELECT_SELECTED_BODIES = "SELECT RequestID, Body, Type FROM Bodies WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ")";
+        private static final String SELECT_SELECTED_FILE_PATHS = "SELECT RequestID, Path FROM FilePaths WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ")";
+        private static final String SELECT_SELECTED_TIMINGS = "SELECT * FROM Timings WHERE RequestID IN (" + SELECTED_REQUEST_IDS + ") ORDER BY rowid";
+
         private static final String SAVE_REQUEST = "INSERT INTO Requests(Type, Target, AuthMethod, Date) VALUES(?, ?, ?, ?)";
         private static final String SAVE_REQUEST_CONTENT_PAIR = "INSERT INTO RequestContentMap(RequestID, ContentType) VALUES(?, ?)";
         private static final String SAVE_BODY = "INSERT INTO Bodies(RequestID, Body, Type) VALUES(?, ?, ?)";
         private static final String SAVE_FILE_PATH = "INSERT INTO FilePaths(RequestID, Path) VALUES(?, ?)";
         private static final String SAVE_TUPLE = "INSERT INTO Tuples(RequestID, Type, Key, Value, Checked) VALUES(?, ?, ?, ?, ?)";
         private static final String SAVE_SIMPLE_AUTH_CREDENTIALS = "INSERT INTO SimpleAuthCredentials(RequestID, Type, Username, Password, Enabled) VALUES(?, ?, ?, ?, ?)";
-        private static final String SELECT_RECENT_REQUESTS = "SELECT * FROM Requests WHERE Requests.Date > ?";
+        private static final String SAVE_TIMINGS = "INSERT INTO Timings(RequestID, DNS, Connect, TLS, TTFB, Download) VALUES(?, ?, ?, ?, ?, ?)";
         private static final String SELECT_REQUEST_CONTENT_TYPE = "SELECT ContentType FROM RequestContentMap WHERE RequestID == ?";
         private static final String SELECT_REQUEST_BODY = "SELECT Body, Type FROM Bodies WHERE RequestID == ?";
         private static final String SELECT_FILE_PATH = "SELECT Path FROM FilePaths WHERE RequestID == ?";
@@ -60,15 +121,19 @@ class SQLiteManager implements DataManager {
     }
 
     public SQLiteManager() {
+        this(DATABASE_PATH);
+    }
+
+    SQLiteManager(String databasePath) {
         try {
-            String configPath = "Everest/config/";
-            File configFolder = new File(configPath);
+            File configFolder = new File(databasePath).getAbsoluteFile().getParentFile();
             if (!configFolder.exists()) {
-                if (configFolder.mkdirs())
-                    LoggingService.logSevere("Unable to create directory: " + configPath, null, LocalDateTime.now());
+                if (!configFolder.mkdirs())
+                    LoggingService.logSevere("Unable to create directory: " + configFolder.getPath(), null, LocalDateTime.now());
             }
 
-            conn = DriverManager.getConnection("jdbc:sqlite:Everest/config/history.sqlite");
+            conn = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+            configureConnection();
             createDatabase();
             LoggingService.logInfo("Connected to database.", LocalDateTime.now());
         } catch (Exception E) {
@@ -76,39 +141,99 @@ class SQLiteManager implements DataManager {
         }
     }
 
+    /**
+     * Switches the database to write-ahead logging. Writers then append to the log instead of
+     * rewriting the database file, and readers are never blocked by them.
+     * With WAL, synchronous=NORMAL only syncs the log at checkpoints, which still keeps the database consistent.
+     */
+    private void configureConnection() throws SQLException {
+        try (Statement pragmas = conn.createStatement()) {
+            pragmas.execute("PRAGMA journal_mode=WAL");
+            pragmas.execute("PRAGMA synchronous=NORMAL");
+        }
+    }
+
     /**
      * Creates and initializes the database with necessary tables if not already done.
      */
     private void createDatabase() throws SQLException {
-        for (String query : Queries.CREATE_QUERIES) {
-            statement = conn.prepareStatement(query);
-            statement.execute();
+        try (Statement createStatement = conn.createStatement()) {
+            for (String query : Queries.CREATE_QUERIES)
+                createStatement.execute(query);
+        }
+
+        createSearchIndex();
+    }
+
+    /**
+     * Creates the full-text index of the requests and adds to it the ones saved before it existed.
+     * If the SQLite build lacks FTS5, searchHistory() reports that it is unsupported instead.
+     */
+    private void createSearchIndex() {
+        try (Statement createStatement = conn.createStatement()) {
+            createStatement.execute(Queries.CREATE_SEARCH_INDEX);
+            createStatement.executeUpdate(Queries.INDEX_MISSING_REQUESTS);
+            searchIndexAvailable = true;
+        } catch (SQLException e) {
+            LoggingService.logWarning("Full-text search is unavailable. History will be searched in memory.", e, LocalDateTime.now());
         }
     }
 
+    /**
+     * Returns the statement for the given query, preparing it only the first time it is asked for.
+     */
+    private PreparedStatement prepare(String query) throws SQLException {
+        PreparedStatement preparedStatement = statementCache.get(query);
+
+        if (preparedStatement == null) {
+            preparedStatement = conn.prepareStatement(query);
+            statementCache.put(query, preparedStatement);
+        }
+
+        return preparedStatement;
+    }
+
     /**
      * Saves the request to the database if it is not identical to one made exactly before it.
      * Method is synchronized to allow only one database transaction at a time.
+     * All the rows of the request are written in a single transaction, which is rolled back if any of them fails.
      *
      * @param newState - The state of the Dashboard while making the request.
      */
     @Override
-    public synchronized void saveState(ComposerState newState) throws SQLException {
-        statement = conn.prepareStatement(Queries.SAVE_REQUEST);
+    public synchronized int saveState(ComposerState newState) throws SQLException {
+        conn.setAutoCommit(false);
 
-        statement.setString(1, newState.httpMethod);
-        statement.setString(2, newState.target);
-        statement.setString(3, newState.authMethod);
-        statement.setString(4, LocalDate.now().toString());
-        statement.executeUpdate();
+        try {
+            int requestID = saveRequest(newState);
+            conn.commit();
+            return requestID;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
 
-        // Get latest RequestID to insert into Headers table
-        statement = conn.prepareStatement("SELECT MAX(ID) AS MaxID FROM Requests");
+    private int saveRequest(ComposerState newState) throws SQLException {
+        if (saveRequestStatement == null)
+            saveRequestStatement = conn.prepareStatement(Queries.SAVE_REQUEST, Statement.RETURN_GENERATED_KEYS);
 
-        ResultSet RS = statement.executeQuery();
-        int requestID = -1;
-        if (RS.next())
-            requestID = RS.getInt("MaxID");
+        saveRequestStatement.setString(1, newState.httpMethod);
+        saveRequestStatement.setString(2, newState.target);
+        saveRequestStatement.setString(3, newState.authMethod);
+        saveRequestStatement.setString(4, LocalDate.now().toString());
+        saveRequestStatement.executeUpdate();
+
+        // The ID of the row just inserted, which the rest of the tables refer to
+        int requestID;
+        try (ResultSet keys = saveRequestStatement.getGeneratedKeys()) {
+            if (!keys.next())
+                throw new SQLException("No ID was generated for the saved request.");
+
+            requestID = keys.getInt(1);
+        }
 
         saveTuple(newState.headers, HEADER, requestID);
         saveTuple(newState.params, PARAM, requestID);
@@ -118,18 +243,18 @@ class SQLiteManager implements DataManager {
 
         if (!(newState.httpMethod.equals(HTTPConstants.GET) || newState.httpMethod.equals(HTTPConstants.DELETE))) {
             // Maps the request to its ContentType for faster retrieval
-            statement = conn.prepareStatement(Queries.SAVE_REQUEST_CONTENT_PAIR);
+            statement = prepare(Queries.SAVE_REQUEST_CONTENT_PAIR);
             statement.setInt(1, requestID);
             statement.setString(2, newState.contentType);
             statement.executeUpdate();
 
-            statement = conn.prepareStatement(Queries.SAVE_BODY);
+            statement = prepare(Queries.SAVE_BODY);
             statement.setInt(1, requestID);
             statement.setString(2, newState.rawBody);
             statement.setString(3, newState.rawBodyBoxValue);
             statement.executeUpdate();
 
-            statement = conn.prepareStatement(Queries.SAVE_FILE_PATH);
+            statement = prepare(Queries.SAVE_FILE_PATH);
             statement.setInt(1, requestID);
             statement.setString(2, newState.binaryFilePath);
             statement.executeUpdate();
@@ -138,6 +263,29 @@ class SQLiteManager implements DataManager {
             saveTuple(newState.formStringTuples, FORM_STRING, requestID);
             saveTuple(newState.formFileTuples, FILE, requestID);
         }
+
+        if (searchIndexAvailable) {
+            statement = prepare(Queries.INDEX_REQUEST);
+            statement.setInt(1, requestID);
+            statement.executeUpdate();
+        }
+
+        return requestID;
+    }
+
+    /**
+     * Times are stored in nanoseconds. Phases which were not measured are stored as -1.
+     */
+    @Override
+    public synchronized void saveTimings(int requestID, TimingBreakdown timings) throws SQLException {
+        statement = prepare(Queries.SAVE_TIMINGS);
+        statement.setInt(1, requestID);
+        statement.setLong(2, timings.getDnsTime());
+        statement.setLong(3, timings.getConnectTime());
+        statement.setLong(4, timings.getTlsTime());
+        statement.setLong(5, timings.getTimeToFirstByte());
+        statement.setLong(6, timings.getDownloadTime());
+        statement.executeUpdate();
     }
 
     private void saveSimpleAuthCredentials(int requestID,
@@ -148,7 +296,7 @@ class SQLiteManager implements DataManager {
         if (username == null || username.isEmpty() || password == null || password.isEmpty())
             return;
 
-        statement = conn.prepareStatement(Queries.SAVE_SIMPLE_AUTH_CREDENTIALS);
+        statement = prepare(Queries.SAVE_SIMPLE_AUTH_CREDENTIALS);
         statement.setInt(1, requestID);
         statement.setString(2, type);
         statement.setString(3, username);
@@ -159,61 +307,223 @@ class SQLiteManager implements DataManager {
     }
 
     /**
-     * Returns a list of all the recent requests.
+     * Returns a list of all the recent requests, oldest first.
+     */
+    @Override
+    public List<ComposerState> getHistory() throws SQLException {
+        List<ComposerState> history = getHistory(Integer.MAX_VALUE, -1);
+        Collections.reverse(history);
+        return history;
+    }
+
+    /**
+     * Returns a page of the recent requests, newest first.
+     *
+     * @param beforeID Only requests with a lower ID are returned.
+     * @param limit    Maximum number of requests to return. A negative limit returns all of them.
+     */
+    @Override
+    public synchronized List<ComposerState> getHistory(int beforeID, int limit) throws SQLException {
+        prepare(Queries.CLEAR_SELECTION).executeUpdate();
+
+        statement = prepare(Queries.SELECT_PAGE);
+        statement.setString(1, getHistoryStartDate());
+        statement.setInt(2, beforeID);
+        statement.setInt(3, limit);
+        statement.executeUpdate();
+
+        return loadSelectedRequests();
+    }
+
+    /**
+     * Looks the search string up in the full-text index of the recent requests.
+     * Every word of the search string is matched as a prefix, so that results can be shown while the user is typing.
+     *
+     * @return The best matches, best first, or null if the index is unavailable.
      */
     @Override
-    public synchronized List<ComposerState> getHistory() throws SQLException {
-        List<ComposerState> history = new ArrayList<>();
-        // Loads the requests from the last x number of days, x being Settings.showHistoryRange
-        statement = conn.prepareStatement(Queries.SELECT_RECENT_REQUESTS);
-        String historyStartDate = LocalDate.now().minusDays(Settings.showHistoryRange).toString();
-        statement.setString(1, historyStartDate);
-
-        ResultSet resultSet = statement.executeQuery();
-
-        ComposerState state;
-        while (resultSet.next()) {
-            state = new ComposerState();
-
-            state.target = resultSet.getString("Target");
-            state.authMethod = resultSet.getString(AUTH_METHOD);
-
-            int requestID = resultSet.getInt(ID);
-            state.headers = getTuples(requestID, HEADER);
-            state.params = getTuples(requestID, PARAM);
-            state.httpMethod = resultSet.getString("Type");
-            getSimpleAuthCredentials(state, requestID, BASIC);
-            getSimpleAuthCredentials(state, requestID, DIGEST);
-
-            if (!(state.httpMethod.equals(HTTPConstants.GET) || state.httpMethod.equals(HTTPConstants.DELETE))) {
-                // Retrieves request body ContentType for querying corresponding table
-                state.contentType = getRequestContentType(requestID);
-
-                Pair<String, String> rawBodyAndType = getRequestBody(requestID);
-
-                if (rawBodyAndType != null) {
-                    state.rawBody = rawBodyAndType.getKey();
-                    state.rawBodyBoxValue = rawBodyAndType.getValue();
+    public synchronized List<ComposerState> searchHistory(String searchString, int limit) throws SQLException {
+        if (!searchIndexAvailable)
+            return null;
+
+        String matchQuery = toMatchQuery(searchString);
+        if (matchQuery == null)
+            return new ArrayList<>();
+
+        prepare(Queries.CLEAR_SELECTION).executeUpdate();
+
+        statement = prepare(Queries.SELECT_SEARCH_RESULTS);
+        statement.setString(1, matchQuery);
+        statement.setString(2, getHistoryStartDate());
+        statement.setInt(3, limit);
+        statement.executeUpdate();
+
+        return loadSelectedRequests();
+    }
+
+    /**
+     * Converts the search string into an FTS5 query which matches every word in it as a prefix.
+     * The words are split the way the index tokenizes text, so that a URL typed in matches the URL indexed.
+     *
+     * @return The query, or null if the search string has no words in it.
+     */
+    static String toMatchQuery(String searchString) {
+        StringBuilder query = new StringBuilder();
+        for (String word : searchString.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+
+            if (query.length() > 0)
+                query.append(' ');
+            query.append('"').append(word).append("\"*");
+        }
+
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    // Loads the requests from the last x number of days, x being Settings.showHistoryRange
+    private static String getHistoryStartDate() {
+        return LocalDate.now().minusDays(Settings.showHistoryRange).toString();
+    }
+
+    /**
+     * Loads the requests in SelectedRequests, in the order in which they were selected.
+     * <p>
+     * The requests are loaded with one query per table, each returning the rows of all the selected requests,
+     * which are then distributed to their ComposerStates by RequestID.
+     */
+    private List<ComposerState> loadSelectedRequests() throws SQLException {
+        LinkedHashMap<Integer, ComposerState> states = new LinkedHashMap<>();
+
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_REQUESTS).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = new ComposerState();
+                state.httpMethod = RS.getString("Type");
+                state.target = RS.getString("Target");
+                state.authMethod = RS.getString(AUTH_METHOD);
+
+                state.headers = new ArrayList<>();
+                state.params = new ArrayList<>();
+
+                String empty = "";
+                state.basicUsername = empty;
+                state.basicPassword = empty;
+                state.digestUsername = empty;
+                state.digestPassword = empty;
+
+                if (hasBody(state.httpMethod)) {
+                    state.urlStringTuples = new ArrayList<>();
+                    state.formStringTuples = new ArrayList<>();
+                    state.formFileTuples = new ArrayList<>();
                 }
 
-                state.binaryFilePath = getFilePath(requestID);
+                state.historyID = RS.getInt(ID);
+                states.put(state.historyID, state);
+            }
+        }
 
-                state.urlStringTuples = getTuples(requestID, URL_STRING);
-                state.formStringTuples = getTuples(requestID, FORM_STRING);
-                state.formFileTuples = getTuples(requestID, FILE);
+        if (states.isEmpty())
+            return new ArrayList<>();
+
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_TUPLES).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state == null)
+                    continue;
+
+                List<FieldState> tuples = getTupleList(state, RS.getString("Type"));
+                if (tuples != null)
+                    tuples.add(new FieldState(RS.getString("Key"), RS.getString("Value"), RS.getBoolean("Checked")));
             }
+        }
 
-            history.add(state);
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_SIMPLE_AUTH_CREDENTIALS).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state == null)
+                    continue;
+
+                String type = RS.getString("Type");
+                if (type.equals(BASIC)) {
+                    state.basicUsername = RS.getString("Username");
+                    state.basicPassword = RS.getString("Password");
+                    state.basicEnabled = RS.getInt("Enabled") == 1;
+                } else if (type.equals(DIGEST)) {
+                    state.digestUsername = RS.getString("Username");
+                    state.digestPassword = RS.getString("Password");
+                    state.digestEnabled = RS.getInt("Enabled") == 1;
+                }
+            }
         }
 
-        return history;
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_CONTENT_TYPES).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state != null && hasBody(state.httpMethod) && state.contentType == null)
+                    state.contentType = RS.getString("ContentType");
+            }
+        }
+
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_BODIES).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state != null && hasBody(state.httpMethod) && state.rawBody == null) {
+                    state.rawBody = RS.getString("Body");
+                    state.rawBodyBoxValue = RS.getString("Type");
+                }
+            }
+        }
+
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_FILE_PATHS).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state != null && hasBody(state.httpMethod) && state.binaryFilePath == null)
+                    state.binaryFilePath = RS.getString("Path");
+            }
+        }
+
+        // Ordered by rowid, so that the latest timings of a request win
+        try (ResultSet RS = prepare(Queries.SELECT_SELECTED_TIMINGS).executeQuery()) {
+            while (RS.next()) {
+                ComposerState state = states.get(RS.getInt("RequestID"));
+                if (state != null)
+                    state.timings = new TimingBreakdown(RS.getLong("DNS"), RS.getLong("Connect"), RS.getLong("TLS"),
+                            RS.getLong("TTFB"), RS.getLong("Download"));
+            }
+        }
+
+        return new ArrayList<>(states.values());
+    }
+
+    private static boolean hasBody(String httpMethod) {
+        return !(httpMethod.equals(HTTPConstants.GET) || httpMethod.equals(HTTPConstants.DELETE));
+    }
+
+    /**
+     * @return The list of the state which holds tuples of the given type, or null if the state does not have one.
+     */
+    private static List<FieldState> getTupleList(ComposerState state, String type) {
+        switch (type) {
+            case HEADER:
+                return state.headers;
+            case PARAM:
+                return state.params;
+            case URL_STRING:
+                return state.urlStringTuples;
+            case FORM_STRING:
+                return state.formStringTuples;
+            case FILE:
+                return state.formFileTuples;
+            default:
+                return null;
+        }
     }
 
     private void getSimpleAuthCredentials(ComposerState state, int requestID, String type) throws SQLException {
         if (!(type.equals(BASIC) || type.equals(DIGEST)))
             return;
 
-        statement = conn.prepareStatement(Queries.SELECT_SIMPLE_AUTH_CREDENTIALS);
+        statement = prepare(Queries.SELECT_SIMPLE_AUTH_CREDENTIALS);
         statement.setInt(1, requestID);
         statement.setString(2, type);
 
@@ -244,7 +554,7 @@ class SQLiteManager implements DataManager {
     private String getRequestContentType(int requestID) throws SQLException {
         String contentType = null;
 
-        statement = conn.prepareStatement(Queries.SELECT_REQUEST_CONTENT_TYPE);
+        statement = prepare(Queries.SELECT_REQUEST_CONTENT_TYPE);
         statement.setInt(1, requestID);
 
         ResultSet RS = statement.executeQuery();
@@ -267,7 +577,7 @@ class SQLiteManager implements DataManager {
 
         ArrayList<FieldState> fieldStates = new ArrayList<>();
 
-        PreparedStatement statement = conn.prepareStatement(Queries.SELECT_TUPLES_BY_TYPE);
+        PreparedStatement statement = prepare(Queries.SELECT_TUPLES_BY_TYPE);
         statement.setInt(1, requestID);
         statement.setString(2, type);
 
@@ -286,10 +596,10 @@ class SQLiteManager implements DataManager {
     }
 
     @Override
-    public ComposerState getLastAdded() {
+    public synchronized ComposerState getLastAdded() {
         ComposerState lastRequest = new ComposerState();
         try {
-            statement = conn.prepareStatement(Queries.SELECT_MOST_RECENT_REQUEST);
+            statement = prepare(Queries.SELECT_MOST_RECENT_REQUEST);
             ResultSet RS = statement.executeQuery();
 
             int requestID = -1;
@@ -327,7 +637,7 @@ class SQLiteManager implements DataManager {
     }
 
     private Pair<String, String> getRequestBody(int requestID) throws SQLException {
-        statement = conn.prepareStatement(Queries.SELECT_REQUEST_BODY);
+        statement = prepare(Queries.SELECT_REQUEST_BODY);
         statement.setInt(1, requestID);
 
         ResultSet RS = statement.executeQuery();
@@ -340,7 +650,7 @@ class SQLiteManager implements DataManager {
     }
 
     private String getFilePath(int requestID) throws SQLException {
-        statement = conn.prepareStatement(Queries.SELECT_FILE_PATH);
+        statement = prepare(Queries.SELECT_FILE_PATH);
         statement.setInt(1, requestID);
 
         ResultSet RS = statement.executeQuery();
@@ -351,23 +661,35 @@ class SQLiteManager implements DataManager {
             return null;
     }
 
-    private void saveTuple(List<FieldState> tuples, String tupleType, int requestID) {
-        if (tuples.size() > 0) {
-            try {
-                for (FieldState fieldState : tuples) {
-                    statement = conn.prepareStatement(Queries.SAVE_TUPLE);
-                    statement.setInt(1, requestID);
-                    statement.setString(2, tupleType);
-                    statement.setString(3, fieldState.key);
-                    statement.setString(4, fieldState.value);
-                    statement.setInt(5, fieldState.checked ? 1 : 0);
-                    statement.addBatch();
-                }
-                statement.executeBatch();
-            } catch (SQLException e) {
-                LoggingService.logSevere("Database error.", e, LocalDateTime.now());
-            }
+    private void saveTuple(List<FieldState> tuples, String tupleType, int requestID) throws SQLException {
+        if (tuples == null || tuples.size() == 0)
+            return;
+
+        statement = prepare(Queries.SAVE_TUPLE);
+        for (FieldState fieldState : tuples) {
+            statement.setInt(1, requestID);
+            statement.setString(2, tupleType);
+            statement.setString(3, fieldState.key);
+            statement.setString(4, fieldState.value);
+            statement.setInt(5, fieldState.checked ? 1 : 0);
+            statement.addBatch();
         }
+        statement.executeBatch();
+    }
+
+    /**
+     * Closes the cached statements and the connection.
+     */
+    synchronized void close() throws SQLException {
+        for (PreparedStatement preparedStatement : statementCache.values())
+            preparedStatement.close();
+        statementCache.clear();
+
+        if (saveRequestStatement != null)
+            saveRequestStatement.close();
+        saveRequestStatement = null;
+
+        conn.close();
     }
 
     @Override
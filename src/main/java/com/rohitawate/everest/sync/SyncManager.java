@@ -4,12 +4,15 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.rohitawate.everest.controllers.HomeWindowController;
 import com.rohitawate.everest.exceptions.DuplicateException;
 import com.rohitawate.everest.logging.LoggingService;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
 import com.rohitawate.everest.settings.Settings;
 import com.rohitawate.everest.state.ComposerState;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 /**
@@ -40,16 +43,43 @@ public class SyncManager {
 
     /**
      * Asynchronously saves the new state by invoking all the registered DataManagers.
+     *
+     * @return The saved request, to which the timings of its response are attached by saveTimings(),
+     * or null if the state was not saved since it is the same as the last one.
      */
-    public void saveState(ComposerState newState) {
+    public SavedState saveState(ComposerState newState) {
         // Compares new state with the last added state from the primary fetch source
         if (newState.equals(managers.get(Settings.fetchSource).getLastAdded()))
-            return;
+            return null;
 
-        historySaver.newState = newState;
+        SavedState saved = new SavedState(newState);
+        historySaver.saved = saved;
         executor.execute(historySaver);
 
         homeWindowController.addHistoryItem(newState);
+        return saved;
+    }
+
+    /**
+     * Asynchronously saves the timings of the response to the given request, which was returned by saveState().
+     * The timings are also attached to the state so that they show up in the history pane.
+     */
+    public void saveTimings(SavedState saved, TimingBreakdown timings) {
+        if (saved == null || timings == null)
+            return;
+
+        saved.state.timings = timings;
+        executor.execute(() -> {
+            try {
+                for (DataManager manager : managers.values()) {
+                    Integer requestID = saved.requestIDs.get(manager.getIdentifier());
+                    if (requestID != null)
+                        manager.saveTimings(requestID, timings);
+                }
+            } catch (Exception e) {
+                LoggingService.logSevere("Could not save response timings.", e, LocalDateTime.now());
+            }
+        });
     }
 
     /**
@@ -73,6 +103,46 @@ public class SyncManager {
         return history;
     }
 
+    /**
+     * Retrieves a page of the history from the configured source, newest first.
+     *
+     * @param beforeID The historyID of the last state of the previous page, or Integer.MAX_VALUE for the first page.
+     * @return Up to 'limit' requests older than the one with the given ID.
+     */
+    public List<ComposerState> getHistory(int beforeID, int limit) {
+        List<ComposerState> history = null;
+        try {
+            if (managers.get(Settings.fetchSource) == null) {
+                LoggingService.logSevere("No such source found: " + Settings.fetchSource, null, LocalDateTime.now());
+                history = managers.get("SQLite").getHistory(beforeID, limit);
+            } else {
+                history = managers.get(Settings.fetchSource).getHistory(beforeID, limit);
+            }
+        } catch (Exception e) {
+            LoggingService.logSevere("History could not be fetched.", e, LocalDateTime.now());
+        }
+
+        return history;
+    }
+
+    /**
+     * Searches the history at the configured source.
+     *
+     * @return The best matching requests, best first, or null if the source cannot be searched.
+     */
+    public List<ComposerState> searchHistory(String searchString, int limit) {
+        DataManager manager = managers.get(Settings.fetchSource);
+        if (manager == null)
+            manager = managers.get("SQLite");
+
+        try {
+            return manager.searchHistory(searchString, limit);
+        } catch (Exception e) {
+            LoggingService.logWarning("History could not be searched.", e, LocalDateTime.now());
+            return null;
+        }
+    }
+
     /**
      * Registers a new DataManager to be used for syncing Everest's data
      * at various sources.
@@ -85,14 +155,26 @@ public class SyncManager {
             managers.put(newManager.getIdentifier(), newManager);
     }
 
+    /**
+     * A state passed to saveState(), along with the ID each DataManager saved it under.
+     */
+    public static class SavedState {
+        private final ComposerState state;
+        private final Map<String, Integer> requestIDs = new ConcurrentHashMap<>();
+
+        private SavedState(ComposerState state) {
+            this.state = state;
+        }
+    }
+
     private static class HistorySaver implements Runnable {
-        private ComposerState newState;
+        private SavedState saved;
 
         @Override
         public void run() {
             try {
                 for (DataManager manager : managers.values())
-                    manager.saveState(newState);
+                    saved.requestIDs.put(manager.getIdentifier(), manager.saveState(saved.state));
             } catch (Exception e) {
                 LoggingService.logSevere("Could not save history.", e, LocalDateTime.now());
             }
@@ -0,0 +1,52 @@
+package com.rohitawate.everest.controllers.codearea.highlighters;
+
+import com.rohitawate.everest.format.JSONDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JSONHighlighterTest {
+    private static final StyleEncoder STYLES = new StyleEncoder()
+            .code("json_curly", 'C')
+            .code("json_array", 'A')
+            .code("json_property", 'P')
+            .code("json_value", 'V')
+            .code("json_bool", 'B')
+            .code("json_number", 'N');
+
+    private final JSONHighlighter highlighter = new JSONHighlighter();
+
+    @Test
+    void stylesEveryToken() {
+        assertStyles("{\"id\": [-1.5e3, true, null, \"x\"], \"ok\" : false}",
+                "CPPPP..ANNNNNN..BBBB..BBBB..VVVA..PPPP...BBBBBC");
+    }
+
+    @Test
+    void ignoresEscapedQuotes() {
+        assertStyles("{\"a\\\"b\": \"c\\\\\"}",
+                "CPPPPPP..VVVVVC");
+    }
+
+    @Test
+    void carriesUnterminatedStringsIntoTheNextParagraph() {
+        assertStyles("[\"one\ntwo\", 3]",
+                "AVVVV.VVVV..NA");
+    }
+
+    @Test
+    void highlightsParsedDocumentsLikeTheirText() throws IOException {
+        JSONDocument document = JSONDocument.parse(new StringReader(
+                "{\"id\": [-1.5e3, true, null, \"x\"], \"nested\": {\"ok\": false, \"list\": []}}"));
+
+        assertEquals(STYLES.encode(highlighter.computeHighlighting(document.getText())),
+                STYLES.encode(highlighter.computeHighlighting(document)));
+    }
+
+    private void assertStyles(String text, String expected) {
+        assertEquals(expected, STYLES.encode(highlighter.computeHighlighting(text)));
+    }
+}
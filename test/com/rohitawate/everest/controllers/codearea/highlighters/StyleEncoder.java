@@ -0,0 +1,35 @@
+package com.rohitawate.everest.controllers.codearea.highlighters;
+
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes the styles computed by a Highlighter as one letter per character,
+ * so that tests can write the expected styles out beneath their text.
+ */
+class StyleEncoder {
+    private final Map<String, Character> codes = new HashMap<>();
+
+    StyleEncoder code(String styleClass, char code) {
+        codes.put(styleClass, code);
+        return this;
+    }
+
+    /**
+     * Encodes the style of every character as its letter, '.' standing for no style and '?' for an unknown one.
+     */
+    String encode(StyleSpans<Collection<String>> spans) {
+        StringBuilder builder = new StringBuilder();
+        for (StyleSpan<Collection<String>> span : spans) {
+            char code = span.getStyle().isEmpty() ? '.' : codes.getOrDefault(span.getStyle().iterator().next(), '?');
+            for (int i = 0; i < span.getLength(); i++)
+                builder.append(code);
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.rohitawate.everest.controllers.codearea.highlighters;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares XMLHighlighter with the regular expression based highlighter it replaced
+ * on generated documents of 1 MB, 10 MB and 50 MB.
+ * <p>
+ * The documents mix nested elements with attributes, multi-line comments, CDATA sections,
+ * processing instructions and entity references.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class XMLHighlighterBenchmark {
+    @Param({"1", "10", "50"})
+    public int megabytes;
+
+    private String document;
+
+    private final XMLHighlighter tokenizer = new XMLHighlighter();
+    private final RegexXMLHighlighter regex = new RegexXMLHighlighter();
+
+    @Setup
+    public void generateDocument() {
+        int length = megabytes * 1024 * 1024;
+        StringBuilder builder = new StringBuilder(length + 1024);
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!DOCTYPE catalog SYSTEM \"catalog.dtd\">\n")
+                .append("<catalog xmlns:x=\"urn:example\">\n");
+
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append("  <!-- Item ").append(i).append("\n       spans two lines -->\n")
+                    .append("  <item id=\"").append(i).append("\" x:status='active' available=\"true\">\n")
+                    .append("    <name>Widget &amp; Sprocket &#").append(160 + i % 100).append(";</name>\n")
+                    .append("    <description><![CDATA[Contains <markup> & \"quotes\"]]></description>\n")
+                    .append("    <?render mode=\"compact\"?>\n")
+                    .append("    <price currency=\"EUR\">").append(i % 1000).append(".99</price>\n")
+                    .append("    <tags><tag>a</tag><tag>b</tag><empty/></tags>\n")
+                    .append("  </item>\n");
+        }
+
+        document = builder.append("</catalog>\n").toString();
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> tokenizer() {
+        return tokenizer.computeHighlighting(document);
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> regex() {
+        return regex.computeHighlighting(document);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(XMLHighlighterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
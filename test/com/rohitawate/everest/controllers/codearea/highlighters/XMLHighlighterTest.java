@@ -0,0 +1,46 @@
+package com.rohitawate.everest.controllers.codearea.highlighters;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XMLHighlighterTest {
+    private static final StyleEncoder STYLES = new StyleEncoder()
+            .code("xml_bracket", 'B')
+            .code("xml_tag", 'T')
+            .code("xml_attribute", 'A')
+            .code("xml_attribute_value", 'V')
+            .code("xml_comment", 'C')
+            .code("xml_cdata", 'X')
+            .code("xml_declaration", 'D')
+            .code("xml_entity", 'E');
+
+    private final XMLHighlighter highlighter = new XMLHighlighter();
+
+    @Test
+    void stylesElementsAndAttributes() {
+        assertStyles("<a href=\"x\" id='y'>t &amp; u</a>",
+                "BT.AAAABVVV.AABVVVB..EEEEE..BBTB");
+    }
+
+    @Test
+    void stylesCommentsCdataAndDeclarations() {
+        assertStyles("<?xml v?><!-- <a> --><![CDATA[<b>]]><!DOCTYPE x>",
+                "DDDDDDDDDCCCCCCCCCCCCXXXXXXXXXXXXXXXDDDDDDDDDDDD");
+    }
+
+    @Test
+    void carriesCommentsAndTagsIntoTheNextParagraph() {
+        assertStyles("<!-- a\nb --><c\nd=\"e\nf\"/>",
+                "CCCCCC.CCCCCBT.ABVV.VVBB");
+    }
+
+    @Test
+    void leavesStrayMarkupUnstyled() {
+        assertStyles("a < b & c", ".........");
+    }
+
+    private void assertStyles(String text, String expected) {
+        assertEquals(expected, STYLES.encode(highlighter.computeHighlighting(text)));
+    }
+}
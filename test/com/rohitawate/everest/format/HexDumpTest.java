@@ -0,0 +1,20 @@
+package com.rohitawate.everest.format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HexDumpTest {
+    @Test
+    void formatsFullAndPartialLines() {
+        byte[] bytes = {(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a, 0, 0, 0, 0x0d, 'I', 'H', 'D', 'R', (byte) 0xff, 'A'};
+
+        assertEquals("00000000  89 50 4e 47 0d 0a 1a 0a  00 00 00 0d 49 48 44 52  |.PNG........IHDR|\n"
+                + "00000010  ff 41                                             |.A|\n", HexDump.format(bytes));
+    }
+
+    @Test
+    void formatsNothing() {
+        assertEquals("", HexDump.format(new byte[0]));
+    }
+}
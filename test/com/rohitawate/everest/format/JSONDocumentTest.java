@@ -0,0 +1,56 @@
+package com.rohitawate.everest.format;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JSONDocumentTest {
+    private static final String JSON = "{\"id\":7,\"tags\":[\"a\",\"b\\n\"],\"empty\":{},\"none\":[],"
+            + "\"owner\":{\"name\":\"x\\\"y\",\"score\":-1.5,\"active\":true,\"manager\":null}}";
+
+    @Test
+    void printsTheSameTextAsJSONFormatter() throws IOException {
+        assertEquals(new JSONFormatter().format(JSON).replace(System.lineSeparator(), "\n"), parse(JSON).getText());
+    }
+
+    @Test
+    void buildsTheSameTreeAsObjectMapper() throws Exception {
+        assertEquals(new ObjectMapper().readTree(JSON), parse(JSON).buildTree());
+        assertEquals(new ObjectMapper().readTree("[2147483648, 9223372036854775808, \"\\u0001\\t\"]"),
+                parse("[2147483648, 9223372036854775808, \"\\u0001\\t\"]").buildTree());
+    }
+
+    @Test
+    void recordsTheOffsetsOfTokens() throws IOException {
+        JSONDocument document = parse("[{\"a\": \"b\"}, 12, false]");
+        String text = document.getText();
+
+        assertEquals(8, document.getTokenCount());
+        assertEquals(JsonToken.FIELD_NAME, document.getTokenType(2));
+        assertEquals("\"a\"", text.substring(document.getTokenStart(2), document.getTokenEnd(2)));
+        assertEquals(JsonToken.VALUE_NUMBER_INT, document.getTokenType(5));
+        assertEquals("12", text.substring(document.getTokenStart(5), document.getTokenEnd(5)));
+        assertEquals(JsonToken.END_ARRAY, document.getTokenType(7));
+        assertEquals(text.length(), document.getTokenEnd(7));
+    }
+
+    @Test
+    void keepsNumbersAsWritten() throws IOException {
+        assertEquals("[ 1.50, -2e10, 123456789012345678901234567890 ]", parse("[1.50,-2e10,123456789012345678901234567890]").getText());
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThrows(IOException.class, () -> parse("{\"a\": [1, }"));
+    }
+
+    private static JSONDocument parse(String json) throws IOException {
+        return JSONDocument.parse(new StringReader(json));
+    }
+}
@@ -0,0 +1,34 @@
+package com.rohitawate.everest.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JSONFormatterTest {
+    private final JSONFormatter formatter = new JSONFormatter();
+
+    @Test
+    void indentsObjectsAndArrays() throws IOException {
+        assertEquals("{\n  \"id\" : 7,\n  \"tags\" : [ \"a\", \"b\" ],\n  \"owner\" : {\n    \"name\" : \"x\\\"y\"\n  }\n}",
+                formatter.format("{\"id\":7,\"tags\":[\"a\",\"b\"],\"owner\":{\"name\":\"x\\\"y\"}}"));
+    }
+
+    @Test
+    void streamsWithoutClosingTheWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        formatter.format(new StringReader("[1, 2.5, true, null]"), writer);
+        writer.write('!');
+
+        assertEquals("[ 1, 2.5, true, null ]!", writer.toString());
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThrows(IOException.class, () -> formatter.format("{\"a\": }"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.rohitawate.everest.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRingBufferTest {
+    @Test
+    void rejectsEntriesWhenFull() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        for (int i = 0; i < 4; i++)
+            assertTrue(buffer.offer(log(Integer.toString(i))));
+        assertFalse(buffer.offer(log("overflow")));
+
+        List<Log> batch = new ArrayList<>();
+        assertEquals(2, buffer.drainTo(batch, 2));
+        assertEquals("0", batch.get(0).message);
+        assertEquals("1", batch.get(1).message);
+
+        assertTrue(buffer.offer(log("4")));
+        assertEquals(3, buffer.drainTo(batch, 10));
+        assertEquals("4", batch.get(4).message);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void deliversEveryEntryFromConcurrentProducersOnce() throws InterruptedException {
+        int producers = 4, entriesPerProducer = 20_000;
+        LogRingBuffer buffer = new LogRingBuffer(1024);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String prefix = p + ":";
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < entriesPerProducer; i++) {
+                    Log entry = log(prefix + i);
+                    while (!buffer.offer(entry))
+                        Thread.yield();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+
+        Set<String> received = new HashSet<>();
+        int[] lastReceived = new int[producers];
+        Arrays.fill(lastReceived, -1);
+        List<Log> batch = new ArrayList<>();
+
+        while (received.size() < producers * entriesPerProducer) {
+            batch.clear();
+            buffer.drainTo(batch, 128);
+            for (Log entry : batch) {
+                assertTrue(received.add(entry.message), "Received twice: " + entry.message);
+
+                // Entries from the same producer arrive in the order they were offered.
+                String[] parts = entry.message.split(":");
+                int producer = Integer.parseInt(parts[0]), index = Integer.parseInt(parts[1]);
+                assertEquals(lastReceived[producer] + 1, index);
+                lastReceived[producer] = index;
+            }
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static Log log(String message) {
+        return new Log(Level.INFO, message, null, "");
+    }
+}
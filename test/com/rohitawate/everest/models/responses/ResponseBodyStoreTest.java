@@ -0,0 +1,40 @@
+package com.rohitawate.everest.models.responses;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBodyStoreTest {
+
+    @Test
+    void keepsSmallBodiesOnHeap() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(StandardCharsets.UTF_8, 1024);
+        store.readFrom(new ByteArrayInputStream("{\"key\": \"value\"}".getBytes(StandardCharsets.UTF_8)));
+
+        assertFalse(store.isSpilled());
+        assertEquals(16, store.size());
+        assertEquals("{\"key\": \"value\"}", store.asString());
+    }
+
+    @Test
+    void spillsLargeBodiesToDisk() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 50000; i++)
+            body.append("Everest ").append(i).append('\n');
+
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        ResponseBodyStore store = new ResponseBodyStore(StandardCharsets.UTF_8, 4096);
+        store.readFrom(new ByteArrayInputStream(bytes));
+
+        assertTrue(store.isSpilled());
+        assertEquals(bytes.length, store.size());
+        assertEquals(body.toString(), store.asString());
+
+        store.dispose();
+        assertFalse(store.isSpilled());
+    }
+}
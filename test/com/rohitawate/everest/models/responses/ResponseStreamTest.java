@@ -0,0 +1,55 @@
+package com.rohitawate.everest.models.responses;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseStreamTest {
+
+    @Test
+    void readsEveryLineWhileEventsAreAdded() throws InterruptedException {
+        int events = 20000;
+        ResponseStream stream = new ResponseStream(events);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < events; i++)
+                stream.addEvent(Collections.singletonList("event " + i));
+        });
+        writer.start();
+
+        List<String> read = new ArrayList<>();
+        long nextLine = 0;
+        while (writer.isAlive() || nextLine < stream.getLineCount())
+            nextLine = stream.getLines(nextLine, read);
+        writer.join();
+
+        assertEquals(events, nextLine);
+        assertEquals(events, read.size());
+        for (int i = 0; i < events; i++)
+            assertTrue(read.get(i).endsWith("] event " + i), read.get(i));
+    }
+
+    @Test
+    void skipsLinesWhichAreNoLongerRetained() {
+        ResponseStream stream = new ResponseStream(3);
+        stream.addEvent(Arrays.asList("a", "b"));
+
+        List<String> read = new ArrayList<>();
+        long nextLine = stream.getLines(0, read);
+        assertEquals(2, nextLine);
+
+        stream.addEvent(Arrays.asList("c", "d", "e", "f"));
+        nextLine = stream.getLines(nextLine, read);
+
+        assertEquals(6, nextLine);
+        assertEquals(5, read.size());
+        assertTrue(read.get(1).endsWith("] b"));
+        assertTrue(read.get(2).endsWith("] d"));
+        assertTrue(read.get(4).endsWith("] f"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.rohitawate.everest.requestmanager;
+
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheEntryTest {
+    private static final long NOW = 1_500_000_000_000L;
+
+    @Test
+    void isFreshForMaxAgeLessAge() {
+        CacheEntry entry = new CacheEntry();
+        assertTrue(entry.readHeaders(headers("Cache-Control", "public, max-age=60", "age", "50"), NOW));
+
+        assertTrue(entry.isFresh(NOW + 9_000));
+        assertFalse(entry.isFresh(NOW + 10_000));
+    }
+
+    @Test
+    void fallsBackToExpires() {
+        CacheEntry entry = new CacheEntry();
+        entry.readHeaders(headers("Date", "Sun, 06 Nov 1994 08:49:37 GMT",
+                "Expires", "Sun, 06 Nov 1994 08:50:37 GMT"), NOW);
+
+        assertEquals(60, entry.freshnessLifetime);
+    }
+
+    @Test
+    void revalidatesNoCacheResponses() {
+        CacheEntry entry = new CacheEntry();
+        assertTrue(entry.readHeaders(headers("Cache-Control", "no-cache, max-age=60", "ETag", "\"v1\""), NOW));
+
+        assertFalse(entry.isFresh(NOW));
+        assertEquals("\"v1\"", entry.getConditionalHeaders().get("If-None-Match"));
+    }
+
+    @Test
+    void doesNotStoreUncacheableResponses() {
+        assertFalse(new CacheEntry().readHeaders(headers("Cache-Control", "no-store", "ETag", "\"v1\""), NOW));
+        assertFalse(new CacheEntry().readHeaders(headers("Vary", "Cookie", "ETag", "\"v1\""), NOW));
+        // Neither fresh nor revalidatable
+        assertFalse(new CacheEntry().readHeaders(headers("Content-Type", "text/plain"), NOW));
+    }
+
+    @Test
+    void describesTheDecodedBody() {
+        CacheEntry entry = new CacheEntry();
+        entry.bodySize = 1000;
+        assertTrue(entry.readHeaders(headers("Cache-Control", "max-age=60", "Content-Encoding", "gzip",
+                "content-length", "120", "Transfer-Encoding", "chunked"), NOW));
+
+        assertNull(entry.getHeader("Content-Encoding"));
+        assertNull(entry.getHeader("Transfer-Encoding"));
+        assertEquals("1000", entry.getHeader("Content-Length"));
+        assertEquals(1, entry.headers.keySet().stream().filter(name -> name.equalsIgnoreCase("Content-Length")).count());
+
+        // Still so once revalidated
+        MultivaluedHashMap<String, String> notModified = new MultivaluedHashMap<>();
+        notModified.putSingle("Content-Encoding", "gzip");
+        notModified.putSingle("ETag", "\"v2\"");
+        entry.refresh(notModified, NOW + 1000);
+        assertNull(entry.getHeader("Content-Encoding"));
+        assertEquals("1000", entry.getHeader("Content-Length"));
+        assertEquals("\"v2\"", entry.etag);
+    }
+
+    private static Map<String, List<String>> headers(String... namesAndValues) {
+        Map<String, List<String>> headers = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            headers.put(namesAndValues[i], Collections.singletonList(namesAndValues[i + 1]));
+
+        return headers;
+    }
+}
@@ -0,0 +1,77 @@
+package com.rohitawate.everest.requestmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentDecodingTest {
+    private static final byte[] BODY = "{\"message\": \"Hello, Everest!\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void decodesOnlyKnownCodings() {
+        assertTrue(ContentDecoding.isDecodable("gzip"));
+        assertTrue(ContentDecoding.isDecodable("deflate, BR"));
+        assertFalse(ContentDecoding.isDecodable(null));
+        assertFalse(ContentDecoding.isDecodable("identity"));
+        assertFalse(ContentDecoding.isDecodable("gzip, zstd"));
+    }
+
+    @Test
+    void decodesGzip() throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream stream = new GZIPOutputStream(encoded)) {
+            stream.write(BODY);
+        }
+
+        assertDecodes(encoded.toByteArray(), "gzip");
+    }
+
+    @Test
+    void decodesZlibWrappedAndRawDeflate() throws IOException {
+        assertDecodes(deflate(false), "deflate");
+        assertDecodes(deflate(true), "deflate");
+    }
+
+    @Test
+    void undoesCodingsInReverse() throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream stream = new GZIPOutputStream(encoded)) {
+            stream.write(deflate(false));
+        }
+
+        assertDecodes(encoded.toByteArray(), "deflate, gzip");
+    }
+
+    private static byte[] deflate(boolean raw) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream stream = new DeflaterOutputStream(encoded, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            stream.write(BODY);
+        }
+
+        return encoded.toByteArray();
+    }
+
+    private static void assertDecodes(byte[] encoded, String contentEncoding) throws IOException {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream stream = ContentDecoding.decode(new ByteArrayInputStream(encoded), contentEncoding)) {
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = stream.read(buffer)) != -1)
+                decoded.write(buffer, 0, count);
+        }
+
+        assertEquals(new String(BODY, StandardCharsets.UTF_8), new String(decoded.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,43 @@
+package com.rohitawate.everest.requestmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventStreamReaderTest {
+    @Test
+    void parsesServerSentEvents() throws IOException {
+        String body = ": keep-alive\n\n"
+                + "data: first\n\n"
+                + "event: update\r\nid: 7\r\ndata: {\"a\": 1}\r\ndata:{\"b\": 2}\r\n\r\n"
+                + "retry: 1000\n\n"
+                + "data: incomplete";
+
+        try (EventStreamReader reader = reader(body, true)) {
+            assertEquals(Collections.singletonList("first"), reader.readEvent());
+            assertEquals(Arrays.asList("update #7 {\"a\": 1}", "{\"b\": 2}"), reader.readEvent());
+            assertNull(reader.readEvent());
+        }
+    }
+
+    @Test
+    void splitsOtherStreamsIntoLines() throws IOException {
+        try (EventStreamReader reader = reader("{\"a\": 1}\n\n{\"b\": 2}", false)) {
+            assertEquals(Collections.singletonList("{\"a\": 1}"), reader.readEvent());
+            assertEquals(Collections.singletonList("{\"b\": 2}"), reader.readEvent());
+            assertNull(reader.readEvent());
+        }
+    }
+
+    private static EventStreamReader reader(String body, boolean serverSentEvents) {
+        return new EventStreamReader(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, serverSentEvents);
+    }
+}
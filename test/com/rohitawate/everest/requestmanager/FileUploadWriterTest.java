@@ -0,0 +1,45 @@
+package com.rohitawate.everest.requestmanager;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileUploadWriterTest {
+    @Test
+    void writesFilesSpanningSeveralRegions() throws Exception {
+        byte[] contents = new byte[40 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(contents);
+
+        File file = Files.createTempFile("everest-upload", ".bin").toFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents);
+
+        UploadProgress progress = new UploadProgress(p -> assertTrue(p.getSent() <= p.getTotal()));
+        ByteArrayOutputStream body = new ByteArrayOutputStream(contents.length);
+        new FileUploadWriter().writeTo(new FileUpload(file, progress), FileUpload.class, FileUpload.class,
+                null, null, null, body);
+
+        assertTrue(Arrays.equals(contents, body.toByteArray()));
+        assertEquals(contents.length, progress.getTotal());
+        assertEquals(contents.length, progress.getSent());
+    }
+
+    @Test
+    void writesEmptyFiles() throws Exception {
+        File file = Files.createTempFile("everest-upload", ".bin").toFile();
+        file.deleteOnExit();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        new FileUploadWriter().writeTo(new FileUpload(file, null), FileUpload.class, FileUpload.class,
+                null, null, null, body);
+
+        assertEquals(0, body.size());
+    }
+}
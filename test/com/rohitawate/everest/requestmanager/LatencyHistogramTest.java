@@ -0,0 +1,53 @@
+package com.rohitawate.everest.requestmanager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void countsSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getMax());
+    }
+
+    @Test
+    void boundsErrorOfLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value < 1_000_000_000L; value = value * 3 + 7) {
+            histogram.record(value);
+
+            long upperBound = LatencyHistogram.highestValueIn(LatencyHistogram.indexOf(value));
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound - value <= value / 64);
+        }
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void mergesHistograms() {
+        LatencyHistogram first = new LatencyHistogram(), second = new LatencyHistogram();
+        for (int i = 0; i < 90; i++)
+            first.record(1000);
+        for (int i = 0; i < 10; i++)
+            second.record(50_000);
+
+        first.add(second);
+
+        assertEquals(100, first.getTotalCount());
+        assertEquals(1000, first.getMin());
+        assertEquals(50_000, first.getMax());
+        assertTrue(Math.abs(first.getValueAtPercentile(50) - 1000) <= 1000 / 64);
+        assertEquals(50_000, first.getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,99 @@
+package com.rohitawate.everest.requestmanager;
+
+import com.rohitawate.everest.models.requests.GETRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestTest {
+    private static final byte[] BODY = "{\"status\": \"ok\"}".getBytes();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger hits = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+
+        // Every fifth request fails with a 500
+        server.createContext("/", exchange -> {
+            int status = hits.incrementAndGet() % 5 == 0 ? 500 : 200;
+            exchange.sendResponseHeaders(status, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        // The server does not shut down executors it was given.
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void reportsLatencyStatusAndErrors() throws Exception {
+        GETRequest request = new GETRequest();
+        request.setTarget("http://localhost:" + server.getAddress().getPort() + "/");
+        request.setHeaders(new HashMap<>());
+
+        AtomicInteger progress = new AtomicInteger();
+        LoadTestReport report = new LoadTest(request, 100, 4).run(completed -> progress.incrementAndGet());
+
+        assertEquals(100, hits.get());
+        assertEquals(100, progress.get());
+        assertEquals(100, report.getCompleted());
+        assertEquals(0, report.getFailures());
+        assertEquals(80, (int) report.getStatusCounts().get(200));
+        assertEquals(20, (int) report.getStatusCounts().get(500));
+        assertEquals(0.2, report.getErrorRate(), 1e-9);
+        assertEquals(200, report.getMostFrequentStatus());
+        assertEquals(100L * BODY.length, report.getBytesReceived());
+        assertTrue(report.getLatency(50) <= report.getLatency(99));
+        assertTrue(report.getLatency(99) <= report.getMaxLatency());
+        assertTrue(report.getThroughput() > 0);
+    }
+
+    @Test
+    void countsRefusedConnectionsAsFailures() throws Exception {
+        int port = server.getAddress().getPort();
+        server.stop(0);
+
+        GETRequest request = new GETRequest();
+        request.setTarget("http://localhost:" + port + "/");
+        request.setHeaders(new HashMap<>());
+
+        LoadTestReport report = new LoadTest(request, 10, 2).run(completed -> {
+        });
+
+        assertEquals(10, report.getFailures());
+        assertEquals(1.0, report.getErrorRate(), 1e-9);
+        assertNotNull(report.getLastFailure());
+    }
+
+    @Test
+    void rejectsConcurrencyAboveTheLimit() throws Exception {
+        GETRequest request = new GETRequest();
+        request.setTarget("http://localhost:" + server.getAddress().getPort() + "/");
+        request.setHeaders(new HashMap<>());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoadTest(request, 1000, LoadTest.MAX_CONCURRENCY + 1));
+    }
+}
@@ -0,0 +1,183 @@
+package com.rohitawate.everest.sync;
+
+import com.rohitawate.everest.models.requests.HTTPConstants;
+import com.rohitawate.everest.state.ComposerState;
+import com.rohitawate.everest.state.FieldState;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the throughput of history saves before and after saveState() was made transactional,
+ * and measures the time taken by getHistory() to load the entire history and by searchHistory() to answer
+ * the queries made as a search string is typed out.
+ * <p>
+ * Both databases are first seeded with the same number of entries (100,000 by default).
+ * The "before" numbers come from LegacyWriter, which reproduces the old write path: autocommit
+ * with a rollback journal, a freshly prepared statement per row and "SELECT MAX(ID)" to find the new request.
+ * (The old saveTuple() only ever executed the batch of its last statement, dropping all but the last tuple.
+ * LegacyWriter writes every tuple so that both sides save the same rows.)
+ * <p>
+ * Usage: SQLiteManagerBenchmark [seed entries] [measured saves]
+ */
+public class SQLiteManagerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int saves = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        File directory = Files.createTempDirectory("everest-benchmark").toFile();
+        String legacyPath = new File(directory, "legacy.sqlite").getPath();
+        String currentPath = new File(directory, "current.sqlite").getPath();
+
+        System.out.println("Seeding " + entries + " entries into each database...");
+        seed(legacyPath, entries);
+        seed(currentPath, entries);
+
+        try (LegacyWriter legacy = new LegacyWriter(legacyPath)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < saves; i++)
+                legacy.save(sampleState(i));
+            report("Before", saves, System.nanoTime() - start);
+        }
+
+        SQLiteManager manager = new SQLiteManager(currentPath);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < saves; i++)
+                manager.saveState(sampleState(i));
+            report("After", saves, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<ComposerState> history = manager.getHistory();
+            System.out.printf("Loaded %d history entries in %.1f ms%n",
+                    history.size(), (System.nanoTime() - start) / 1_000_000.0);
+
+            String searchString = "api.example.com/v1/items/4242";
+            for (int length = 1; length <= searchString.length(); length++) {
+                String prefix = searchString.substring(0, length);
+                start = System.nanoTime();
+                List<ComposerState> results = manager.searchHistory(prefix, 200);
+                System.out.printf("Searched '%s' in %.1f ms: %d results%n",
+                        prefix, (System.nanoTime() - start) / 1_000_000.0, results == null ? 0 : results.size());
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static void seed(String path, int entries) throws SQLException {
+        SQLiteManager manager = new SQLiteManager(path);
+        try {
+            for (int i = 0; i < entries; i++)
+                manager.saveState(sampleState(i));
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static void report(String label, int saves, long elapsed) {
+        double seconds = elapsed / 1_000_000_000.0;
+        System.out.printf("%-6s %d saves in %.2f s: %.1f saves/sec%n", label, saves, seconds, saves / seconds);
+    }
+
+    private static ComposerState sampleState(int index) {
+        ComposerState state = new ComposerState();
+        state.httpMethod = HTTPConstants.POST;
+        state.target = "https://api.example.com/v1/items/" + index + "?page=2";
+        state.authMethod = "None";
+        state.headers = Arrays.asList(
+                new FieldState("Accept", "application/json", true),
+                new FieldState("X-Request-ID", Integer.toString(index), true),
+                new FieldState("Cache-Control", "no-cache", false));
+        state.params = Arrays.asList(
+                new FieldState("page", "2", true),
+                new FieldState("limit", "50", true));
+        state.contentType = HTTPConstants.getComplexContentType(HTTPConstants.JSON);
+        state.rawBody = "{\"name\": \"Item " + index + "\", \"tags\": [\"a\", \"b\"], \"count\": " + index + "}";
+        state.rawBodyBoxValue = state.contentType;
+        state.binaryFilePath = "";
+        state.basicUsername = "";
+        state.basicPassword = "";
+        state.digestUsername = "";
+        state.digestPassword = "";
+        state.urlStringTuples = new ArrayList<>();
+        state.formStringTuples = Arrays.asList(new FieldState("field", "value", true));
+        state.formFileTuples = new ArrayList<>();
+        return state;
+    }
+
+    /**
+     * The write path of SQLiteManager.saveState() before it was made transactional.
+     */
+    private static class LegacyWriter implements AutoCloseable {
+        private final Connection conn;
+
+        private LegacyWriter(String path) throws SQLException {
+            conn = DriverManager.getConnection("jdbc:sqlite:" + path);
+            try (Statement pragmas = conn.createStatement()) {
+                pragmas.execute("PRAGMA journal_mode=DELETE");
+                pragmas.execute("PRAGMA synchronous=FULL");
+            }
+        }
+
+        private void save(ComposerState state) throws SQLException {
+            PreparedStatement statement = conn.prepareStatement("INSERT INTO Requests(Type, Target, AuthMethod, Date) VALUES(?, ?, ?, ?)");
+            statement.setString(1, state.httpMethod);
+            statement.setString(2, state.target);
+            statement.setString(3, state.authMethod);
+            statement.setString(4, LocalDate.now().toString());
+            statement.executeUpdate();
+
+            statement = conn.prepareStatement("SELECT MAX(ID) AS MaxID FROM Requests");
+            ResultSet RS = statement.executeQuery();
+            int requestID = -1;
+            if (RS.next())
+                requestID = RS.getInt("MaxID");
+
+            saveTuples(state.headers, "Header", requestID);
+            saveTuples(state.params, "Param", requestID);
+
+            statement = conn.prepareStatement("INSERT INTO RequestContentMap(RequestID, ContentType) VALUES(?, ?)");
+            statement.setInt(1, requestID);
+            statement.setString(2, state.contentType);
+            statement.executeUpdate();
+
+            statement = conn.prepareStatement("INSERT INTO Bodies(RequestID, Body, Type) VALUES(?, ?, ?)");
+            statement.setInt(1, requestID);
+            statement.setString(2, state.rawBody);
+            statement.setString(3, state.rawBodyBoxValue);
+            statement.executeUpdate();
+
+            statement = conn.prepareStatement("INSERT INTO FilePaths(RequestID, Path) VALUES(?, ?)");
+            statement.setInt(1, requestID);
+            statement.setString(2, state.binaryFilePath);
+            statement.executeUpdate();
+
+            saveTuples(state.urlStringTuples, "URLString", requestID);
+            saveTuples(state.formStringTuples, "FormString", requestID);
+            saveTuples(state.formFileTuples, "File", requestID);
+        }
+
+        private void saveTuples(List<FieldState> tuples, String type, int requestID) throws SQLException {
+            for (FieldState tuple : tuples) {
+                PreparedStatement statement = conn.prepareStatement("INSERT INTO Tuples(RequestID, Type, Key, Value, Checked) VALUES(?, ?, ?, ?, ?)");
+                statement.setInt(1, requestID);
+                statement.setString(2, type);
+                statement.setString(3, tuple.key);
+                statement.setString(4, tuple.value);
+                statement.setInt(5, tuple.checked ? 1 : 0);
+                statement.executeUpdate();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.rohitawate.everest.sync;
+
+import com.rohitawate.everest.models.requests.HTTPConstants;
+import com.rohitawate.everest.models.responses.TimingBreakdown;
+import com.rohitawate.everest.state.ComposerState;
+import com.rohitawate.everest.state.FieldState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SQLiteManagerTest {
+    private File directory;
+    private SQLiteManager manager;
+
+    @BeforeEach
+    void openDatabase() throws Exception {
+        directory = Files.createTempDirectory("everest-test").toFile();
+        manager = new SQLiteManager(new File(directory, "history.sqlite").getPath());
+    }
+
+    @AfterEach
+    void closeDatabase() throws Exception {
+        manager.close();
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    void matchesEveryWordAsPrefix() {
+        assertEquals("\"api\"* \"example\"* \"com\"* \"v1\"*", SQLiteManager.toMatchQuery("api.example.com/v1"));
+        assertEquals("\"Content\"* \"Type\"*", SQLiteManager.toMatchQuery(" Content-Type: "));
+        assertNull(SQLiteManager.toMatchQuery(" ./\" "));
+    }
+
+    @Test
+    void pagesNewestFirst() throws Exception {
+        for (int i = 0; i < 5; i++)
+            manager.saveState(state(HTTPConstants.GET, "http://localhost/items/" + i, ""));
+
+        List<ComposerState> page = manager.getHistory(Integer.MAX_VALUE, 2);
+        assertEquals("http://localhost/items/4", page.get(0).target);
+
+        // Requests saved meanwhile do not shift the next page.
+        manager.saveState(state(HTTPConstants.GET, "http://localhost/items/5", ""));
+        page = manager.getHistory(page.get(1).historyID, 2);
+        assertEquals(2, page.size());
+        assertEquals("http://localhost/items/2", page.get(0).target);
+        assertEquals("http://localhost/items/1", page.get(1).target);
+
+        assertEquals(6, manager.getHistory().size());
+        assertEquals("http://localhost/items/0", manager.getHistory().get(0).target);
+    }
+
+    @Test
+    void searchesTargetsFieldsAndBodies() throws Exception {
+        manager.saveState(state(HTTPConstants.POST, "https://api.example.com/v1/widgets", "{\"name\": \"sprocket\"}"));
+        manager.saveState(state(HTTPConstants.GET, "http://localhost:8080/users", ""));
+        manager.saveState(state(HTTPConstants.GET, "https://example.org/search", ""));
+
+        List<ComposerState> results = manager.searchHistory("exam", 10);
+        assertEquals(2, results.size());
+
+        results = manager.searchHistory("localhost/us", 10);
+        assertEquals(1, results.size());
+        assertEquals("http://localhost:8080/users", results.get(0).target);
+
+        results = manager.searchHistory("sprock", 10);
+        assertEquals(1, results.size());
+        assertEquals("{\"name\": \"sprocket\"}", results.get(0).rawBody);
+
+        assertEquals(3, manager.searchHistory("accept", 10).size());
+        assertTrue(manager.searchHistory("nothing", 10).isEmpty());
+    }
+
+    @Test
+    void attachesTimingsToTheSavedRequest() throws Exception {
+        int first = manager.saveState(state(HTTPConstants.GET, "http://localhost/same", ""));
+        manager.saveState(state(HTTPConstants.GET, "http://localhost/same", ""));
+        manager.saveTimings(first, new TimingBreakdown(1, 2, 3, 4, 5));
+
+        List<ComposerState> page = manager.getHistory(Integer.MAX_VALUE, 2);
+        assertNull(page.get(0).timings);
+        assertEquals(4, page.get(1).timings.getTimeToFirstByte());
+    }
+
+    private static ComposerState state(String method, String target, String body) {
+        ComposerState state = new ComposerState();
+        state.httpMethod = method;
+        state.target = target;
+        state.authMethod = "None";
+        state.headers = Collections.singletonList(new FieldState("Accept", "application/json", true));
+        state.params = new ArrayList<>();
+        state.contentType = HTTPConstants.getComplexContentType(HTTPConstants.JSON);
+        state.rawBody = body;
+        state.rawBodyBoxValue = state.contentType;
+        state.binaryFilePath = "";
+        state.basicUsername = "";
+        state.basicPassword = "";
+        state.digestUsername = "";
+        state.digestPassword = "";
+        state.urlStringTuples = new ArrayList<>();
+        state.formStringTuples = new ArrayList<>();
+        state.formFileTuples = new ArrayList<>();
+        return state;
+    }
+}